@@ -0,0 +1,390 @@
+package com.yrl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import unl.soc.Address;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-path dimension cache for the State, Zipcode and Address tables.
+ * It is a singleton that keeps the natural keys of those rows mapped to their ids, so an address
+ * that was already seen is resolved without touching the database.
+ * Misses are resolved in bulk: one select per table for every missing key, one batched insert for
+ * the keys that still do not exist and one select to read their generated ids.
+ * <p>
+ * Ids found or inserted on a connection with an open transaction are staged for that connection only, and
+ * are published to every thread by {@link #publish(Connection)} once the transaction has committed, or
+ * dropped by {@link #discard(Connection)} when it rolls back. On an auto-commit connection they are published
+ * at once. Keys ignore case and accents, as the default <code>utf8mb4_0900_ai_ci</code> collation of the columns
+ * does, so two spellings MySQL sees as one row share one id. That collation does not pad, so trailing spaces are
+ * kept. A key never folds more than the collation: two values it tells apart never share an id.
+ * <p>
+ * Whatever drops or clears the tables must call {@link #invalidate()}.
+ */
+public final class AddressCache {
+
+    private static final Logger LOGGER = LogManager.getLogger(AddressCache.class);
+    private static final AddressCache INSTANCE = new AddressCache();
+
+    /**
+     * Maximum number of keys bound in a single lookup query.
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    private final Map<String, Integer> stateIds = new ConcurrentHashMap<>();
+    private final Map<ZipcodeKey, Integer> zipcodeIds = new ConcurrentHashMap<>();
+    private final Map<AddressKey, Integer> addressIds = new ConcurrentHashMap<>();
+
+    /**
+     * Ids seen by each connection within its open transaction, not yet visible to other connections.
+     */
+    private final Map<Connection, Staging> staged = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private AddressCache() {
+    }
+
+    static AddressCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drops every cached and staged id. Must be called whenever the State, Zipcode or Address tables
+     * are cleared, dropped or rebuilt.
+     */
+    public static void invalidate() {
+        INSTANCE.stateIds.clear();
+        INSTANCE.zipcodeIds.clear();
+        INSTANCE.addressIds.clear();
+        INSTANCE.staged.clear();
+        LOGGER.debug("Address cache cleared");
+    }
+
+    /**
+     * Publishes the ids staged by a connection, once its transaction has committed.
+     *
+     * @param conn The connection that committed.
+     */
+    void publish(Connection conn) {
+        Staging staging = staged.remove(conn);
+        if (staging != null) {
+            stateIds.putAll(staging.stateIds);
+            zipcodeIds.putAll(staging.zipcodeIds);
+            addressIds.putAll(staging.addressIds);
+        }
+    }
+
+    /**
+     * Drops the ids staged by a connection, once its transaction has rolled back or was abandoned.
+     *
+     * @param conn The connection that rolled back.
+     */
+    void discard(Connection conn) {
+        staged.remove(conn);
+    }
+
+    /**
+     * Selects or inserts a single address.
+     *
+     * @param conn    The connection to run the statements on.
+     * @param address The address to select or insert.
+     * @return The ID of the address in the database.
+     */
+    int resolve(Connection conn, Address address) throws SQLException {
+        return resolveAll(conn, List.of(address)).get(address);
+    }
+
+    /**
+     * Selects or inserts every given address, resolving cache misses in batches.
+     *
+     * @param conn      The connection to run the statements on.
+     * @param addresses The addresses to select or insert.
+     * @return A map of each distinct address to its ID in the database.
+     */
+    Map<Address, Integer> resolveAll(Connection conn, Collection<Address> addresses) throws SQLException {
+        Ids ids = idsFor(conn);
+
+        Map<String, String> states = new LinkedHashMap<>();
+        for (Address address : addresses) {
+            if (address.getState() == null || address.getState().isEmpty()) {
+                throw new IllegalArgumentException("Invalid state");
+            }
+            if (address.getZipCode() % 10000 < 0) {
+                throw new IllegalArgumentException("Invalid zipcode");
+            }
+            String key = normalize(address.getState());
+            if (ids.state(key) == null) {
+                states.putIfAbsent(key, address.getState());
+            }
+        }
+        resolveStates(conn, ids, states);
+
+        Set<ZipcodeKey> zipcodes = new LinkedHashSet<>();
+        for (Address address : addresses) {
+            ZipcodeKey key = zipcodeKeyOf(ids, address);
+            if (ids.zipcode(key) == null) {
+                zipcodes.add(key);
+            }
+        }
+        resolveZipcodes(conn, ids, zipcodes);
+
+        Map<AddressKey, Address> missing = new LinkedHashMap<>();
+        for (Address address : addresses) {
+            AddressKey key = addressKeyOf(ids, address);
+            if (ids.address(key) == null) {
+                missing.putIfAbsent(key, address);
+            }
+        }
+        resolveAddresses(conn, ids, missing);
+
+        Map<Address, Integer> result = new HashMap<>();
+        for (Address address : addresses) {
+            result.put(address, ids.address(addressKeyOf(ids, address)));
+        }
+        return result;
+    }
+
+    /**
+     * Folds a key the way the <code>utf8mb4_0900_ai_ci</code> collation compares it: combining accents removed
+     * and lower case. Whitespace is kept as it is, since the collation is NO PAD.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String folded = value;
+        if (!isAscii(folded)) {
+            // Only the combining diacritical marks, which the collation ignores; other marks are significant
+            folded = Normalizer.normalize(folded, Normalizer.Form.NFD).replaceAll("[\\u0300-\\u036f]+", "");
+        }
+        return folded.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Ids idsFor(Connection conn) throws SQLException {
+        if (conn.getAutoCommit()) {
+            return new Ids(null);
+        }
+        return new Ids(staged.computeIfAbsent(conn, c -> new Staging()));
+    }
+
+    private ZipcodeKey zipcodeKeyOf(Ids ids, Address address) {
+        return new ZipcodeKey(address.getZipCode(), ids.state(normalize(address.getState())));
+    }
+
+    private AddressKey addressKeyOf(Ids ids, Address address) {
+        int zipcodeId = ids.zipcode(zipcodeKeyOf(ids, address));
+        return new AddressKey(normalize(address.getStreet()), normalize(address.getCity()), zipcodeId);
+    }
+
+    /**
+     * @param states The missing states, by normalized key, as spelled by the first address using them.
+     */
+    private void resolveStates(Connection conn, Ids ids, Map<String, String> states) throws SQLException {
+        if (states.isEmpty()) {
+            return;
+        }
+        selectStates(conn, ids, states.values());
+        List<String> toInsert = states.entrySet().stream()
+                .filter(entry -> ids.state(entry.getKey()) == null)
+                .map(Map.Entry::getValue)
+                .toList();
+        if (!toInsert.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into State (state) values (?)")) {
+                for (String state : toInsert) {
+                    ps.setString(1, state);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            selectStates(conn, ids, toInsert);
+        }
+    }
+
+    private void selectStates(Connection conn, Ids ids, Collection<String> states) throws SQLException {
+        for (List<String> chunk : chunks(new ArrayList<>(states))) {
+            String query = "select stateId, state from State where state in (" + placeholders(chunk.size(), "?") + ")";
+            try (PreparedStatement ps = conn.prepareStatement(query)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.putState(normalize(rs.getString("state")), rs.getInt("stateId"));
+                    }
+                }
+            }
+        }
+    }
+
+    private void resolveZipcodes(Connection conn, Ids ids, Set<ZipcodeKey> zipcodes) throws SQLException {
+        if (zipcodes.isEmpty()) {
+            return;
+        }
+        selectZipcodes(conn, ids, zipcodes);
+        List<ZipcodeKey> toInsert = zipcodes.stream().filter(key -> ids.zipcode(key) == null).toList();
+        if (!toInsert.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into Zipcode (zipcode, stateId) values (?, ?)")) {
+                for (ZipcodeKey key : toInsert) {
+                    ps.setInt(1, key.zipcode());
+                    ps.setInt(2, key.stateId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            selectZipcodes(conn, ids, toInsert);
+        }
+    }
+
+    private void selectZipcodes(Connection conn, Ids ids, Collection<ZipcodeKey> zipcodes) throws SQLException {
+        for (List<ZipcodeKey> chunk : chunks(new ArrayList<>(zipcodes))) {
+            String query = "select zipcodeId, zipcode, stateId from Zipcode where (zipcode, stateId) in (" + placeholders(chunk.size(), "(?, ?)") + ")";
+            try (PreparedStatement ps = conn.prepareStatement(query)) {
+                int index = 1;
+                for (ZipcodeKey key : chunk) {
+                    ps.setInt(index++, key.zipcode());
+                    ps.setInt(index++, key.stateId());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.putZipcode(new ZipcodeKey(rs.getInt("zipcode"), rs.getInt("stateId")), rs.getInt("zipcodeId"));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param addresses The missing addresses, by normalized key, as spelled by the first address using them.
+     */
+    private void resolveAddresses(Connection conn, Ids ids, Map<AddressKey, Address> addresses) throws SQLException {
+        if (addresses.isEmpty()) {
+            return;
+        }
+        selectAddresses(conn, ids, addresses);
+        Map<AddressKey, Address> toInsert = new LinkedHashMap<>();
+        addresses.forEach((key, address) -> {
+            if (ids.address(key) == null) {
+                toInsert.put(key, address);
+            }
+        });
+        if (!toInsert.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into Address (street, city, zipcodeId) values (?, ?, ?)")) {
+                for (Map.Entry<AddressKey, Address> entry : toInsert.entrySet()) {
+                    ps.setString(1, entry.getValue().getStreet());
+                    ps.setString(2, entry.getValue().getCity());
+                    ps.setInt(3, entry.getKey().zipcodeId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            selectAddresses(conn, ids, toInsert);
+            LOGGER.debug("Inserted {} addresses", toInsert.size());
+        }
+    }
+
+    private void selectAddresses(Connection conn, Ids ids, Map<AddressKey, Address> addresses) throws SQLException {
+        for (List<Map.Entry<AddressKey, Address>> chunk : chunks(new ArrayList<>(addresses.entrySet()))) {
+            String query = "select addressId, street, city, zipcodeId from Address where (street, city, zipcodeId) in (" + placeholders(chunk.size(), "(?, ?, ?)") + ")";
+            try (PreparedStatement ps = conn.prepareStatement(query)) {
+                int index = 1;
+                for (Map.Entry<AddressKey, Address> entry : chunk) {
+                    ps.setString(index++, entry.getValue().getStreet());
+                    ps.setString(index++, entry.getValue().getCity());
+                    ps.setInt(index++, entry.getKey().zipcodeId());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        AddressKey key = new AddressKey(normalize(rs.getString("street")), normalize(rs.getString("city")), rs.getInt("zipcodeId"));
+                        ids.putAddressIfAbsent(key, rs.getInt("addressId"));
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count, String placeholder) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+
+    /**
+     * Ids seen inside one open transaction.
+     */
+    private static final class Staging {
+        private final Map<String, Integer> stateIds = new HashMap<>();
+        private final Map<ZipcodeKey, Integer> zipcodeIds = new HashMap<>();
+        private final Map<AddressKey, Integer> addressIds = new HashMap<>();
+    }
+
+    /**
+     * The ids visible to one resolution: the published ones, then the ones staged by its transaction.
+     * New ids go to the staging when there is one, and are published directly otherwise.
+     */
+    private final class Ids {
+        private final Staging staging;
+
+        private Ids(Staging staging) {
+            this.staging = staging;
+        }
+
+        private Integer state(String key) {
+            Integer id = stateIds.get(key);
+            return id != null || staging == null ? id : staging.stateIds.get(key);
+        }
+
+        private Integer zipcode(ZipcodeKey key) {
+            Integer id = zipcodeIds.get(key);
+            return id != null || staging == null ? id : staging.zipcodeIds.get(key);
+        }
+
+        private Integer address(AddressKey key) {
+            Integer id = addressIds.get(key);
+            return id != null || staging == null ? id : staging.addressIds.get(key);
+        }
+
+        private void putState(String key, int id) {
+            (staging == null ? stateIds : staging.stateIds).put(key, id);
+        }
+
+        private void putZipcode(ZipcodeKey key, int id) {
+            (staging == null ? zipcodeIds : staging.zipcodeIds).put(key, id);
+        }
+
+        private void putAddressIfAbsent(AddressKey key, int id) {
+            if (address(key) == null) {
+                (staging == null ? addressIds : staging.addressIds).put(key, id);
+            }
+        }
+    }
+
+    private record ZipcodeKey(int zipcode, int stateId) {
+    }
+
+    /**
+     * Address key, with the street and city normalized.
+     */
+    private record AddressKey(String street, String city, int zipcodeId) {
+    }
+}
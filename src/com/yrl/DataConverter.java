@@ -2,26 +2,159 @@ package com.yrl;
 
 import unl.soc.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * The DataConverter class converts data from CSV files to XML and JSON formats.
+ * Each CSV file is parsed once and its records are fanned out through bounded queues to an XML
+ * writer and a JSON writer running concurrently. Independent files are converted in parallel.
+ * The stores reference the persons, so the Persons parser also fills the person map and the Stores
+ * conversion starts once that parse is done.
  */
 public class DataConverter {
-    public static void main(String[] args) {
-        List<Item> itemList = DataProcessor.readItemsCSVtoList("data/Items.csv");
 
-        DataWriter.createXMLFile(itemList, "data/ItemsOutput.xml");
-        DataWriter.createJsonFile(itemList, "Items", "data/ItemsOutput.json");
+    /**
+     * Records buffered between the parser and each writer.
+     */
+    private static final int QUEUE_CAPACITY = 1024;
 
-        List<Person> personList = DataProcessor.readPersonCSVtoList("data/Persons.csv");
+    /**
+     * Marks the end of the records in a queue.
+     */
+    private static final Object END = new Object();
 
-        DataWriter.createXMLFile(personList, "data/PersonsOutput.xml");
-        DataWriter.createJsonFile(personList, "Persons", "data/PersonsOutput.json");
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            // Only read by the Stores parser, after the Persons parser that fills it has completed
+            Map<String, Person> personMap = new HashMap<>();
 
-        List<Store> storeList = DataProcessor.readStoreCSVtoList("data/Stores.csv");
+            List<Future<?>> conversions = new ArrayList<>();
+            conversions.addAll(convert(executor, sink -> DataProcessor.forEachItemCSV("data/Items.csv", sink),
+                    "Items", "data/ItemsOutput.xml", "data/ItemsOutput.json"));
+            List<Future<?>> persons = convert(executor, sink -> DataProcessor.forEachPersonCSV("data/Persons.csv", person -> {
+                        personMap.put(person.getUuid(), person);
+                        sink.accept(person);
+                    }),
+                    "Persons", "data/PersonsOutput.xml", "data/PersonsOutput.json");
+            conversions.addAll(persons);
 
-        DataWriter.createXMLFile(storeList, "data/StoresOutput.xml");
-        DataWriter.createJsonFile(storeList, "Stores", "data/StoresOutput.json");
+            // The first future is the parser
+            persons.get(0).get();
+            conversions.addAll(convert(executor, sink -> DataProcessor.forEachStoreCSV("data/Stores.csv", personMap, sink),
+                    "Stores", "data/StoresOutput.xml", "data/StoresOutput.json"));
+
+            for (Future<?> conversion : conversions) {
+                conversion.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Starts the three stages converting one CSV file: a parser feeding two bounded queues,
+     * and an XML and a JSON writer each draining one of them.
+     *
+     * @param executor The executor running the stages.
+     * @param parser   Parses the CSV file, handing every record to the given sink.
+     * @param header   The header of the JSON array.
+     * @param xmlPath  The XML file to write.
+     * @param jsonPath The JSON file to write.
+     * @return The futures of the three stages.
+     */
+    private static List<Future<?>> convert(ExecutorService executor, Consumer<Consumer<Object>> parser,
+                                           String header, String xmlPath, String jsonPath) {
+        BlockingQueue<Object> xmlQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Object> jsonQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        Future<?> parse = executor.submit(() -> {
+            try {
+                parser.accept(record -> {
+                    put(xmlQueue, record);
+                    put(jsonQueue, record);
+                });
+            } finally {
+                put(xmlQueue, END);
+                put(jsonQueue, END);
+            }
+        });
+        Future<?> xml = executor.submit(() -> {
+            QueueIterator records = new QueueIterator(xmlQueue);
+            try {
+                DataWriter.writeXmlStream(records, xmlPath);
+            } finally {
+                records.drain();
+            }
+        });
+        Future<?> json = executor.submit(() -> {
+            QueueIterator records = new QueueIterator(jsonQueue);
+            try {
+                DataWriter.writeJsonStream(records, header, jsonPath);
+            } finally {
+                records.drain();
+            }
+        });
+        return List.of(parse, xml, json);
+    }
+
+    private static void put(BlockingQueue<Object> queue, Object record) {
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Iterates over the records of a queue until the END marker.
+     */
+    private static class QueueIterator implements Iterator<Object> {
+        private final BlockingQueue<Object> queue;
+        private Object next;
+
+        QueueIterator(BlockingQueue<Object> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            return next != END;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object record = next;
+            next = null;
+            return record;
+        }
+
+        /**
+         * Consumes what is left so the parser is never blocked by a writer that stopped early.
+         */
+        void drain() {
+            while (hasNext()) {
+                next();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -32,21 +32,49 @@ public class SalesData {
         PreparedStatement ps = null;
 
         try {
-            List<String> tablesToTruncate = Arrays.asList("ItemSale", "Item", "Sale", "Store", "Email", "Person", "Address", "Zipcode", "State");
+            List<String> tablesToTruncate = Arrays.asList("StoreDaySummary", "StoreSalesSummary", "ItemSale", "Item", "Sale", "Store", "Email", "Person", "Address", "Zipcode", "State");
             for (String table : tablesToTruncate) {
                 String delete = "delete from " + table;
                 ps = conn.prepareStatement(delete);
                 ps.execute();
                 LOGGER.debug("Table cleared: {}", table);
             }
+            // Tells incremental readers that the data they hold no longer exists
+            ps = conn.prepareStatement("update DataGeneration set generation = uuid()");
+            ps.execute();
         } catch (SQLException e) {
             LOGGER.error("Error cleaning database: {}", e.getMessage());
             throw new RuntimeException(e);
         } finally {
             ConnFactory.closeConnection(ps, conn);
+            AddressCache.invalidate();
+            ItemCatalog.invalidate();
         }
     }
 
+    /**
+     * Opens a batched write session. Records added to it are written with JDBC batching
+     * in a single transaction when the session is flushed or closed.
+     *
+     * @return a new, empty SalesWriter.
+     */
+    public static SalesWriter batch() {
+        return new SalesWriter();
+    }
+
+    /**
+     * Opens an asynchronous ingestion queue. Writes submitted to it are group-committed in the
+     * background and report completion through futures.
+     *
+     * @param capacity       Maximum number of writes waiting to be committed.
+     * @param maxBatchSize   Maximum number of writes committed in one transaction.
+     * @param maxDelayMillis Maximum time a write waits for its group to fill up.
+     * @return a running SalesIngestQueue, to be closed by the caller.
+     */
+    public static SalesIngestQueue ingestQueue(int capacity, int maxBatchSize, long maxDelayMillis) {
+        return new SalesIngestQueue(capacity, maxBatchSize, maxDelayMillis);
+    }
+
     /**
      * Method to add a person record to the database with the provided data.
      *
@@ -167,13 +195,8 @@ public class SalesData {
         PreparedStatement ps = null;
         ResultSet rs = null;
 
-        Map<String, String> mapType = new HashMap<>();
-        mapType.put("Product", "P");
-        mapType.put("Service", "S");
-        mapType.put("Data", "D");
-        mapType.put("Voice", "V");
-
-        type = mapType.get(type);
+        ItemType itemType = ItemType.fromName(type);
+        type = itemType == null ? null : String.valueOf(itemType.getCode());
 
         String insert = "insert into Item (uniqueCode, name, type, basePrice) values (?, ?, ?, ?);";
 
@@ -199,7 +222,8 @@ public class SalesData {
      * @param storeCode
      * @param customerPersonUuid
      * @param salesPersonUuid
-     * @param saleDate
+     * @param saleDate The date of the sale, as yyyy-mm-dd.
+     * @throws IllegalArgumentException if the sale date is not a valid date.
      */
     public static void addSale(String saleCode, String storeCode, String customerPersonUuid, String salesPersonUuid, String saleDate) {
         Connection conn = ConnFactory.createConnection();
@@ -224,11 +248,12 @@ public class SalesData {
             }
             ps = conn.prepareStatement(insert);
             ps.setString(1, saleCode);
-            ps.setString(2, saleDate);
+            java.sql.Date date = java.sql.Date.valueOf(saleDate);
+            ps.setDate(2, date);
             ps.setInt(3, customer.getId());
             ps.setInt(4, salePerson.getId());
             ps.setInt(5, store.getId());
-            ps.executeUpdate();
+            insertWithSummary(conn, ps, SalesSummary.Delta.ofSale(store.getId(), date.toLocalDate()));
 
             LOGGER.debug("Added Sale : {}", saleCode);
         } catch (SQLException e) {
@@ -249,7 +274,7 @@ public class SalesData {
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
 
-        String insert = "insert into ItemSale (itemId, saleId, isLease) values (?, ?, false);";
+        String insert = "insert into ItemSale (itemId, saleId, isLease, grossPrice, tax, netPrice) values (?, ?, false, ?, ?, ?);";
 
         try {
             Item item = DatabaseLoader.loadItem(itemCode);
@@ -265,7 +290,9 @@ public class SalesData {
             ps = conn.prepareStatement(insert);
             ps.setInt(1, item.getId());
             ps.setInt(2, sale.getId());
-            ps.executeUpdate();
+            Item lineItem = new ProductPurchase(item);
+            LinePrices.bind(ps, 3, lineItem);
+            insertWithSummary(conn, ps, lineItemDelta(sale, lineItem));
             LOGGER.debug("Added Product Purchase to ItemSale: {}", itemCode);
         } catch (SQLException e) {
             LOGGER.error("Error Adding Product Purchase to ItemSale: {}", e.getMessage());
@@ -287,7 +314,7 @@ public class SalesData {
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
 
-        String insert = "insert into ItemSale (itemId, saleId, startDate, endDate, isLease) values (?, ?, ?, ?, true);";
+        String insert = "insert into ItemSale (itemId, saleId, startDate, endDate, isLease, grossPrice, tax, netPrice) values (?, ?, ?, ?, true, ?, ?, ?);";
 
         try {
             Item item = DatabaseLoader.loadItem(itemCode);
@@ -313,7 +340,9 @@ public class SalesData {
             ps.setInt(2, sale.getId());
             ps.setString(3, startDate);
             ps.setString(4, endDate);
-            ps.executeUpdate();
+            Item lineItem = new ProductLease(item, startDate, endDate);
+            LinePrices.bind(ps, 5, lineItem);
+            insertWithSummary(conn, ps, lineItemDelta(sale, lineItem));
             LOGGER.debug("Added Product Lease to ItemSale: {}", itemCode);
         } catch (SQLException e) {
             LOGGER.error("Error Adding Product Lease to Sale: {}", e.getMessage());
@@ -337,7 +366,7 @@ public class SalesData {
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
 
-        String insert = "insert into ItemSale (itemId, saleId, totalHours, employeeId) values (?, ?, ?, ?);";
+        String insert = "insert into ItemSale (itemId, saleId, totalHours, employeeId, grossPrice, tax, netPrice) values (?, ?, ?, ?, ?, ?, ?);";
 
         try {
             Person employee = DatabaseLoader.loadPerson(servicePersonUuid);
@@ -364,7 +393,9 @@ public class SalesData {
             ps.setInt(2, sale.getId());
             ps.setDouble(3, billedHours);
             ps.setInt(4, employee.getId());
-            ps.executeUpdate();
+            Item lineItem = new Service(item, billedHours, employee);
+            LinePrices.bind(ps, 5, lineItem);
+            insertWithSummary(conn, ps, lineItemDelta(sale, lineItem));
             LOGGER.debug("Added Service to ItemSale: {}", itemCode);
         } catch (SQLException e) {
             LOGGER.error("Error Adding Service to Sale: {}", e.getMessage());
@@ -386,7 +417,7 @@ public class SalesData {
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
 
-        String insert = "insert into ItemSale (itemId, saleId, totalGb) values (?, ?, ?);";
+        String insert = "insert into ItemSale (itemId, saleId, totalGb, grossPrice, tax, netPrice) values (?, ?, ?, ?, ?, ?);";
 
         try {
             Item item = DatabaseLoader.loadItem(itemCode);
@@ -407,7 +438,9 @@ public class SalesData {
             ps.setInt(1, item.getId());
             ps.setInt(2, sale.getId());
             ps.setDouble(3, gbs);
-            ps.executeUpdate();
+            Item lineItem = new DataPlan(item, gbs);
+            LinePrices.bind(ps, 4, lineItem);
+            insertWithSummary(conn, ps, lineItemDelta(sale, lineItem));
             LOGGER.debug("Added DataPlan to ItemSale: {}", itemCode);
         } catch (SQLException e) {
             LOGGER.error("Error Adding DataPlan to Sale: {}", e.getMessage());
@@ -430,7 +463,7 @@ public class SalesData {
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
 
-        String insert = "insert into ItemSale (itemId, saleId, totalPeriod, phoneNumber) values (?, ?, ?, ?);";
+        String insert = "insert into ItemSale (itemId, saleId, totalPeriod, phoneNumber, grossPrice, tax, netPrice) values (?, ?, ?, ?, ?, ?, ?);";
 
         try {
             Item item = DatabaseLoader.loadItem(itemCode);
@@ -452,7 +485,9 @@ public class SalesData {
             ps.setInt(2, sale.getId());
             ps.setInt(3, days);
             ps.setString(4, phoneNumber);
-            ps.executeUpdate();
+            Item lineItem = new VoicePlan(item, phoneNumber, days);
+            LinePrices.bind(ps, 5, lineItem);
+            insertWithSummary(conn, ps, lineItemDelta(sale, lineItem));
             LOGGER.debug("Added DataPlan to ItemSale: {}", itemCode);
         } catch (SQLException e) {
             LOGGER.error("Error Adding DataPlan to Sale: {}", e.getMessage());
@@ -462,159 +497,75 @@ public class SalesData {
     }
 
     /**
-     * Selects or inserts a state into the database.
+     * Runs an insert and applies its change to the sales summaries in one transaction,
+     * so the summaries never count a row that was not written.
      *
-     * @param state The state to select or insert.
-     * @return The ID of the state in the database.
+     * @param conn  The connection of the insert.
+     * @param ps    The prepared insert.
+     * @param delta The change to the summaries.
+     * @throws SQLException if either write fails; the transaction is rolled back.
      */
-    private static int selectOrInsertState(String state) {
-        if (state.isEmpty()) {
-            throw new RuntimeException("Invalid state");
-        }
-
-        Connection conn = ConnFactory.createConnection();
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-
-        String query = """
-                select stateId from State
-                where state = ?
-                """;
-
+    private static void insertWithSummary(Connection conn, PreparedStatement ps, SalesSummary.Delta delta) throws SQLException {
+        conn.setAutoCommit(false);
         try {
-            //Return id if already exist
-            ps = conn.prepareStatement(query);
-            ps.setString(1, state);
-            rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("stateId");
-            }
-
-            //If do not exist, create
-            query = """
-                    insert into State (state) values (?);
-                    """;
-            ps = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, state);
             ps.executeUpdate();
-            rs = ps.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
+            SalesSummary.apply(conn, List.of(delta));
+            conn.commit();
         } catch (SQLException e) {
-            LOGGER.error("Error in the connection: {}", e.getMessage());
+            conn.rollback();
+            throw e;
         } finally {
-            ConnFactory.closeConnection(rs, ps, conn);
+            conn.setAutoCommit(true);
         }
+    }
 
-        return -1;
+    private static SalesSummary.Delta lineItemDelta(Sale sale, Item lineItem) {
+        return SalesSummary.Delta.ofLineItem(sale.getStore().getId(), sale.getDateTime(), lineItem);
     }
 
     /**
-     * Selects or inserts a zipcode into the database.
+     * Selects or inserts an address into the database.
      *
-     * @param zipcode The zipcode to select or insert.
-     * @param stateId The ID of the state associated with the zipcode.
-     * @return The ID of the zipcode in the database.
+     * @param address The address to select or insert.
+     * @return The ID of the address in the database.
      */
-    private static int selectOrInsertZipcode(int zipcode, int stateId) {
-        if (zipcode % 10000 < 0) {
-            throw new RuntimeException("Invalid zipcode");
-        }
-
+    private static int selectOrInsertAddress(Address address) {
         Connection conn = ConnFactory.createConnection();
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-
-        String query = """
-                select zipcodeId from Zipcode
-                where zipcode = ? and stateId = ?;
-                """;
-
         try {
-            //Return id if already exist
-            ps = conn.prepareStatement(query);
-            ps.setInt(1, zipcode);
-            ps.setInt(2, stateId);
-            rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("zipcodeId");
-            }
-
-            //If do not exist, create
-            String insert = """
-                    insert into Zipcode (zipcode, stateId)
-                    values (?, ?);
-                    """;
-            ps = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS);
-            ps.setInt(1, zipcode);
-            ps.setInt(2, stateId);
-            ps.executeUpdate();
-            rs = ps.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-        } catch (SQLException e) {
-            LOGGER.error("Error in the connection: {}", e.getMessage());
+            return selectOrInsertAddress(conn, address);
         } finally {
-            ConnFactory.closeConnection(rs, ps, conn);
+            ConnFactory.closeConnection(conn);
         }
-
-        return -1;
     }
 
     /**
-     * Selects or inserts an address into the database.
+     * Selects or inserts an address into the database using the given connection,
+     * so it can take part in a caller's transaction.
+     * State, zipcode and address ids are served from the {@link AddressCache} when already known.
      *
+     * @param conn    The connection to run the statements on.
      * @param address The address to select or insert.
      * @return The ID of the address in the database.
      */
-    private static int selectOrInsertAddress(Address address) {
-        Connection conn = ConnFactory.createConnection();
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-
-        //Query for existence address
-        String query = """
-                select addressId from Address
-                where street = ? and zipcodeId = ? and city = ?;
-                """;
-
+    static int selectOrInsertAddress(Connection conn, Address address) {
         try {
-            //Return id if already exist
-            ps = conn.prepareStatement(query);
-            ps.setString(1, address.getStreet());
-            int stateId = selectOrInsertState(address.getState());
-            int zipcodeId = selectOrInsertZipcode(address.getZipCode(), stateId);
-            ps.setInt(2, zipcodeId);
-            ps.setString(3, address.getCity());
-
-            rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("addressId");
-            }
-
-            //If do not exist, create
-            String insert = """
-                    insert into Address (street, city, zipcodeId)
-                    values(?,?,?)
-                    """;
-            ps = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, address.getStreet());
-            ps.setString(2, address.getCity());
-            ps.setInt(3, zipcodeId);
-            ps.executeUpdate();
-
-            rs = ps.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
+            return AddressCache.getInstance().resolve(conn, address);
         } catch (SQLException e) {
             LOGGER.error("Error in the connection: {}", e.toString());
-        } finally {
-            ConnFactory.closeConnection(rs, ps, conn);
         }
         return -1;
     }
 
-}
\ No newline at end of file
+    /**
+     * Selects or inserts every given address in bulk using the given connection.
+     *
+     * @param conn      The connection to run the statements on.
+     * @param addresses The addresses to select or insert.
+     * @return A map of each distinct address to its ID in the database.
+     * @throws SQLException if any lookup or insert fails.
+     */
+    static Map<Address, Integer> selectOrInsertAddresses(Connection conn, Collection<Address> addresses) throws SQLException {
+        return AddressCache.getInstance().resolveAll(conn, addresses);
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.yrl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous, write-behind front end for {@link SalesData}.
+ * Writes are accepted into a bounded queue and a single background flusher group-commits them
+ * through a {@link SalesWriter} once <code>maxBatchSize</code> writes are waiting or
+ * <code>maxDelayMillis</code> has passed since the first one arrived.
+ * <p>
+ * When the queue is full, callers block until the flusher catches up (backpressure).
+ * Writes are committed in submission order, so every write of a sale lands after the sale itself.
+ * Each returned future completes once its write is durable, or exceptionally if its group failed.
+ */
+public class SalesIngestQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(SalesIngestQueue.class);
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    /**
+     * Held shared by submitters from their check of <code>running</code> until their write is queued, and
+     * exclusively by {@link #close()} to stop accepting writes, so no write is queued after the flusher stops.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates the queue and starts its flusher thread.
+     *
+     * @param capacity       Maximum number of writes waiting to be committed.
+     * @param maxBatchSize   Maximum number of writes committed in one transaction.
+     * @param maxDelayMillis Maximum time a write waits for its group to fill up.
+     */
+    public SalesIngestQueue(int capacity, int maxBatchSize, long maxDelayMillis) {
+        if (capacity <= 0 || maxBatchSize <= 0 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("Capacity, batch size and delay must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.flusher = new Thread(this::runFlusher, "sales-ingest-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public CompletableFuture<Void> addPerson(String personUuid, String firstName, String lastName, String street, String city, String state, String zip) {
+        return submit(writer -> writer.addPerson(personUuid, firstName, lastName, street, city, state, zip));
+    }
+
+    public CompletableFuture<Void> addEmail(String personUuid, String email) {
+        return submit(writer -> writer.addEmail(personUuid, email));
+    }
+
+    public CompletableFuture<Void> addStore(String storeCode, String managerCode, String street, String city, String state, String zip) {
+        return submit(writer -> writer.addStore(storeCode, managerCode, street, city, state, zip));
+    }
+
+    public CompletableFuture<Void> addItem(String itemCode, String name, String type, double basePrice) {
+        return submit(writer -> writer.addItem(itemCode, name, type, basePrice));
+    }
+
+    public CompletableFuture<Void> addSale(String saleCode, String storeCode, String customerPersonUuid, String salesPersonUuid, String saleDate) {
+        return submit(writer -> writer.addSale(saleCode, storeCode, customerPersonUuid, salesPersonUuid, saleDate));
+    }
+
+    public CompletableFuture<Void> addProductToSale(String saleCode, String itemCode) {
+        return submit(writer -> writer.addProductToSale(saleCode, itemCode));
+    }
+
+    public CompletableFuture<Void> addLeaseToSale(String saleCode, String itemCode, String startDate, String endDate) {
+        return submit(writer -> writer.addLeaseToSale(saleCode, itemCode, startDate, endDate));
+    }
+
+    public CompletableFuture<Void> addServiceToSale(String saleCode, String itemCode, double billedHours, String servicePersonUuid) {
+        return submit(writer -> writer.addServiceToSale(saleCode, itemCode, billedHours, servicePersonUuid));
+    }
+
+    public CompletableFuture<Void> addDataPlanToSale(String saleCode, String itemCode, double gbs) {
+        return submit(writer -> writer.addDataPlanToSale(saleCode, itemCode, gbs));
+    }
+
+    public CompletableFuture<Void> addVoicePlanToSale(String saleCode, String itemCode, String phoneNumber, int days) {
+        return submit(writer -> writer.addVoicePlanToSale(saleCode, itemCode, phoneNumber, days));
+    }
+
+    /**
+     * Number of writes waiting for the flusher.
+     *
+     * @return the queue depth.
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting writes, commits everything already queued and stops the flusher.
+     */
+    @Override
+    public void close() {
+        // Waits for the submitters already past their check, which the flusher still serves
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Writes left by a flusher that stopped early
+        List<PendingWrite> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(pending -> pending.done().completeExceptionally(new IllegalStateException("Ingest queue is closed")));
+    }
+
+    private CompletableFuture<Void> submit(Consumer<SalesWriter> write) {
+        PendingWrite pending = new PendingWrite(write, new CompletableFuture<>());
+        closeLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Ingest queue is closed");
+            }
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.done().completeExceptionally(e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending.done();
+    }
+
+    private void runFlusher() {
+        List<PendingWrite> group = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(maxDelayMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (group.size() < maxBatchSize) {
+                    if (queue.drainTo(group, maxBatchSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                // Keep draining: pending writes must still be committed or failed,
+                // including the ones already taken off the queue for this group
+                LOGGER.warn("Ingest flusher interrupted with {} writes in hand", group.size());
+                if (!group.isEmpty()) {
+                    commit(group);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Commits a group of writes in one transaction and completes their futures.
+     * A write rejected by validation fails on its own; a failed flush fails the whole group.
+     */
+    private void commit(List<PendingWrite> group) {
+        SalesWriter writer = SalesData.batch();
+        List<PendingWrite> accepted = new ArrayList<>(group.size());
+        for (PendingWrite pending : group) {
+            try {
+                pending.write().accept(writer);
+                accepted.add(pending);
+            } catch (RuntimeException e) {
+                pending.done().completeExceptionally(e);
+            }
+        }
+        try {
+            writer.flush();
+            accepted.forEach(pending -> pending.done().complete(null));
+            LOGGER.debug("Group committed {} writes", accepted.size());
+        } catch (RuntimeException e) {
+            LOGGER.error("Group commit of {} writes failed: {}", accepted.size(), e.getMessage());
+            accepted.forEach(pending -> pending.done().completeExceptionally(e));
+        }
+    }
+
+    private record PendingWrite(Consumer<SalesWriter> write, CompletableFuture<Void> done) {
+    }
+}
@@ -2,6 +2,8 @@ package com.yrl;
 
 import unl.soc.DataReporter;
 
+import java.time.LocalDate;
+
 /**
  * The SalesReport class generates a summary report of sales data.
  * It reads sales, items, persons, and stores information from CSV files,
@@ -12,12 +14,31 @@ public class SalesReport {
 
     /**
      * The main method generates and prints the summary reports.
+     * When given two dates (yyyy-mm-dd), the reports only cover the sales made between them, inclusive.
+     * When given <code>--sql</code>, only the two summary reports are printed, aggregated by the database.
      */
     public static void main(String[] args) {
 
-        String totalsReport = DataReporter.reportTotalsBySales();
-        String storeTotals = DataReporter.reportTotalsByStore();
-        String salesReport = DataReporter.reportSales();
+        if (args.length == 1 && args[0].equals("--sql")) {
+            System.out.println(DataReporter.reportTotalsBySales());
+            System.out.println(DataReporter.reportTotalsByStoreSql());
+            return;
+        }
+
+        String totalsReport;
+        String storeTotals;
+        String salesReport;
+        if (args.length == 2) {
+            LocalDate from = LocalDate.parse(args[0]);
+            LocalDate to = LocalDate.parse(args[1]);
+            totalsReport = DataReporter.reportTotalsBySales(from, to);
+            storeTotals = DataReporter.reportTotalsByStore(from, to);
+            salesReport = DataReporter.reportSales(from, to);
+        } else {
+            totalsReport = DataReporter.reportTotalsBySales();
+            storeTotals = DataReporter.reportTotalsByStore();
+            salesReport = DataReporter.reportSales();
+        }
 
         System.out.println(totalsReport);
         System.out.println(storeTotals);
@@ -0,0 +1,431 @@
+package com.yrl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import unl.soc.*;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * A batched write session for the sales database.
+ * Persons, emails, stores, items, sales and line items are queued in memory and
+ * written on {@link #flush()} with one JDBC batch per table, inside a single transaction.
+ * Codes (uuid, storeCode, uniqueCode) are resolved to ids with bulk lookups instead of one query per row.
+ * <p>
+ * Instances are obtained from {@link SalesData#batch()} and are not thread safe.
+ */
+public class SalesWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(SalesWriter.class);
+
+    /**
+     * Maximum number of codes bound in a single <code>in (...)</code> lookup.
+     */
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+
+    private final List<PersonRow> persons = new ArrayList<>();
+    private final List<EmailRow> emails = new ArrayList<>();
+    private final List<StoreRow> stores = new ArrayList<>();
+    private final List<ItemRow> items = new ArrayList<>();
+    private final List<SaleRow> sales = new ArrayList<>();
+    private final List<LineItemRow> lineItems = new ArrayList<>();
+
+    SalesWriter() {
+    }
+
+    public SalesWriter addPerson(String personUuid, String firstName, String lastName, String street, String city, String state, String zip) {
+        persons.add(new PersonRow(personUuid, firstName, lastName, new Address(street, city, state, Integer.parseInt(zip))));
+        return this;
+    }
+
+    public SalesWriter addEmail(String personUuid, String email) {
+        emails.add(new EmailRow(personUuid, email));
+        return this;
+    }
+
+    public SalesWriter addStore(String storeCode, String managerCode, String street, String city, String state, String zip) {
+        stores.add(new StoreRow(storeCode, managerCode, new Address(street, city, state, Integer.parseInt(zip))));
+        return this;
+    }
+
+    public SalesWriter addItem(String itemCode, String name, String type, double basePrice) {
+        ItemType itemType = ItemType.fromName(type);
+        if (itemType == null) {
+            throw new IllegalArgumentException("Invalid item type: " + type);
+        }
+        items.add(new ItemRow(itemCode, name, String.valueOf(itemType.getCode()), basePrice));
+        return this;
+    }
+
+    public SalesWriter addSale(String saleCode, String storeCode, String customerPersonUuid, String salesPersonUuid, String saleDate) {
+        sales.add(new SaleRow(saleCode, storeCode, customerPersonUuid, salesPersonUuid, java.sql.Date.valueOf(saleDate)));
+        return this;
+    }
+
+    public SalesWriter addProductToSale(String saleCode, String itemCode) {
+        lineItems.add(new LineItemRow(saleCode, itemCode, false, null, null, null, null, null, null, null));
+        return this;
+    }
+
+    public SalesWriter addLeaseToSale(String saleCode, String itemCode, String startDate, String endDate) {
+        if (startDate.length() != 10 || endDate.length() != 10) {
+            throw new IllegalArgumentException("Start date and End date must be in ISO 8601 format");
+        }
+        if (startDate.compareTo(endDate) > 0) {
+            throw new IllegalArgumentException("Start date cannot be after End date");
+        }
+        lineItems.add(new LineItemRow(saleCode, itemCode, true, startDate, endDate, null, null, null, null, null));
+        return this;
+    }
+
+    public SalesWriter addServiceToSale(String saleCode, String itemCode, double billedHours, String servicePersonUuid) {
+        if (billedHours <= 0) {
+            throw new IllegalArgumentException("Billed hours cannot be negative or 0");
+        }
+        lineItems.add(new LineItemRow(saleCode, itemCode, false, null, null, billedHours, servicePersonUuid, null, null, null));
+        return this;
+    }
+
+    public SalesWriter addDataPlanToSale(String saleCode, String itemCode, double gbs) {
+        if (gbs <= 0) {
+            throw new IllegalArgumentException("Gigabytes cannot be negative or 0");
+        }
+        lineItems.add(new LineItemRow(saleCode, itemCode, false, null, null, null, null, gbs, null, null));
+        return this;
+    }
+
+    public SalesWriter addVoicePlanToSale(String saleCode, String itemCode, String phoneNumber, int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Days cannot be negative or 0");
+        }
+        lineItems.add(new LineItemRow(saleCode, itemCode, false, null, null, null, null, null, days, phoneNumber));
+        return this;
+    }
+
+    /**
+     * Number of records waiting to be flushed.
+     *
+     * @return the pending record count.
+     */
+    public int pendingCount() {
+        return persons.size() + emails.size() + stores.size() + items.size() + sales.size() + lineItems.size();
+    }
+
+    /**
+     * Writes every pending record in a single transaction.
+     * On failure the transaction is rolled back and the pending records are kept.
+     *
+     * @throws RuntimeException if any statement fails or a referenced code does not exist.
+     */
+    public void flush() {
+        if (pendingCount() == 0) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        Connection conn = ConnFactory.createConnection();
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeAll(conn);
+                conn.commit();
+                AddressCache.getInstance().publish(conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                // Ids staged by a rolled back transaction no longer exist
+                AddressCache.getInstance().discard(conn);
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error flushing sales batch: {}", e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(conn);
+        }
+        LOGGER.debug("Flushed {} records in {} ms", pendingCount(), System.currentTimeMillis() - begin);
+        clear();
+    }
+
+    /**
+     * Discards every pending record.
+     */
+    public void clear() {
+        persons.clear();
+        emails.clear();
+        stores.clear();
+        items.clear();
+        sales.clear();
+        lineItems.clear();
+    }
+
+    /**
+     * Flushes the pending records.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void writeAll(Connection conn) throws SQLException {
+        List<SalesSummary.Delta> deltas = new ArrayList<>();
+
+        List<Address> addresses = new ArrayList<>();
+        persons.forEach(person -> addresses.add(person.address()));
+        stores.forEach(store -> addresses.add(store.address()));
+        Map<Address, Integer> addressIds = addresses.isEmpty() ? Map.of() : SalesData.selectOrInsertAddresses(conn, addresses);
+
+        if (!persons.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into Person (uuid, firstName, lastName, addressId) values (?, ?, ?, ?)")) {
+                for (PersonRow person : persons) {
+                    ps.setString(1, person.uuid());
+                    ps.setString(2, person.firstName());
+                    ps.setString(3, person.lastName());
+                    ps.setInt(4, addressIds.get(person.address()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        Set<String> personCodes = new HashSet<>();
+        emails.forEach(email -> personCodes.add(email.personUuid()));
+        stores.forEach(store -> personCodes.add(store.managerUuid()));
+        sales.forEach(sale -> {
+            personCodes.add(sale.customerUuid());
+            personCodes.add(sale.salesmanUuid());
+        });
+        lineItems.stream().filter(line -> line.employeeUuid() != null).forEach(line -> personCodes.add(line.employeeUuid()));
+        Map<String, Integer> personIds = lookupIds(conn, "select uuid, personId from Person where uuid in ", personCodes);
+
+        if (!emails.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into Email (address, personId) values (?, ?)")) {
+                for (EmailRow email : emails) {
+                    ps.setString(1, email.address());
+                    ps.setInt(2, requireId(personIds, email.personUuid(), "Person"));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        if (!stores.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into Store (storeCode, managerId, addressId) values (?, ?, ?)")) {
+                for (StoreRow store : stores) {
+                    ps.setString(1, store.storeCode());
+                    ps.setInt(2, requireId(personIds, store.managerUuid(), "Manager"));
+                    ps.setInt(3, addressIds.get(store.address()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        if (!items.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("insert into Item (uniqueCode, name, type, basePrice) values (?, ?, ?, ?)")) {
+                for (ItemRow item : items) {
+                    ps.setString(1, item.itemCode());
+                    ps.setString(2, item.name());
+                    ps.setString(3, item.type());
+                    ps.setDouble(4, item.basePrice());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+
+        if (!sales.isEmpty()) {
+            Set<String> storeCodes = new HashSet<>();
+            sales.forEach(sale -> storeCodes.add(sale.storeCode()));
+            Map<String, Integer> storeIds = lookupIds(conn, "select storeCode, storeId from Store where storeCode in ", storeCodes);
+
+            try (PreparedStatement ps = conn.prepareStatement("insert into Sale (uniqueCode, saleDate, customerId, salesmanId, storeId) values (?, ?, ?, ?, ?)")) {
+                for (SaleRow sale : sales) {
+                    ps.setString(1, sale.saleCode());
+                    ps.setDate(2, sale.saleDate());
+                    ps.setInt(3, requireId(personIds, sale.customerUuid(), "Customer"));
+                    ps.setInt(4, requireId(personIds, sale.salesmanUuid(), "Sale person"));
+                    int storeId = requireId(storeIds, sale.storeCode(), "Store");
+                    ps.setInt(5, storeId);
+                    ps.addBatch();
+                    deltas.add(SalesSummary.Delta.ofSale(storeId, sale.saleDate().toLocalDate()));
+                }
+                ps.executeBatch();
+            }
+        }
+
+        if (!lineItems.isEmpty()) {
+            Set<String> itemCodes = new HashSet<>();
+            Set<String> saleCodes = new HashSet<>();
+            for (LineItemRow line : lineItems) {
+                itemCodes.add(line.itemCode());
+                saleCodes.add(line.saleCode());
+            }
+            Map<String, Item> catalog = lookup(conn, "select uniqueCode, itemId, name, type, basePrice from Item where uniqueCode in ",
+                    itemCodes, SalesWriter::toCatalogItem);
+            Map<String, SaleRef> saleRefs = lookup(conn, "select uniqueCode, saleId, storeId, saleDate from Sale where uniqueCode in ",
+                    saleCodes, rs -> new SaleRef(rs.getInt("saleId"), rs.getInt("storeId"), rs.getDate("saleDate").toLocalDate()));
+
+            String insert = """
+                    insert into ItemSale (itemId, saleId, isLease, startDate, endDate, totalHours, employeeId, totalGb, totalPeriod, phoneNumber,
+                    grossPrice, tax, netPrice)
+                    values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                    """;
+            try (PreparedStatement ps = conn.prepareStatement(insert)) {
+                for (LineItemRow line : lineItems) {
+                    Item catalogItem = require(catalog, line.itemCode(), "Item");
+                    SaleRef sale = require(saleRefs, line.saleCode(), "Sale");
+                    ps.setInt(1, catalogItem.getId());
+                    ps.setInt(2, sale.saleId());
+                    ps.setBoolean(3, line.isLease());
+                    ps.setString(4, line.startDate());
+                    ps.setString(5, line.endDate());
+                    setDouble(ps, 6, line.totalHours());
+                    if (line.employeeUuid() == null) {
+                        ps.setNull(7, Types.INTEGER);
+                    } else {
+                        ps.setInt(7, requireId(personIds, line.employeeUuid(), "Employee"));
+                    }
+                    setDouble(ps, 8, line.totalGb());
+                    if (line.totalPeriod() == null) {
+                        ps.setNull(9, Types.INTEGER);
+                    } else {
+                        ps.setInt(9, line.totalPeriod());
+                    }
+                    ps.setString(10, line.phoneNumber());
+                    Item lineItem = toLineItem(catalogItem, line);
+                    LinePrices.bind(ps, 11, lineItem);
+                    ps.addBatch();
+                    deltas.add(SalesSummary.Delta.ofLineItem(sale.storeId(), sale.saleDate(), lineItem));
+                }
+                ps.executeBatch();
+            }
+        }
+
+        SalesSummary.apply(conn, deltas);
+    }
+
+    private static Item toCatalogItem(ResultSet rs) throws SQLException {
+        int id = rs.getInt("itemId");
+        String code = rs.getString("uniqueCode");
+        String name = rs.getString("name");
+        double basePrice = rs.getDouble("basePrice");
+        return switch (ItemType.fromCode(rs.getString("type"))) {
+            case SERVICE -> new Service(id, code, name, basePrice);
+            case DATA -> new DataPlan(id, code, name, basePrice);
+            case VOICE -> new VoicePlan(id, code, name, basePrice);
+            default -> new ProductPurchase(id, code, name, basePrice);
+        };
+    }
+
+    /**
+     * Builds the line item a row describes, so it can be priced for its stored prices and the sales summaries.
+     *
+     * @throws SQLException if the row lacks the fields the type of the catalog item requires.
+     */
+    private static Item toLineItem(Item catalogItem, LineItemRow line) throws SQLException {
+        ItemType type = line.isLease() ? ItemType.LEASE : catalogItem.getType();
+        Item lineItem = switch (type) {
+            case PRODUCT -> new ProductPurchase(catalogItem);
+            case LEASE -> catalogItem.getType() == ItemType.PRODUCT
+                    ? new ProductLease(catalogItem, line.startDate(), line.endDate()) : null;
+            case SERVICE -> line.totalHours() == null ? null : new Service(catalogItem, line.totalHours(), null);
+            case DATA -> line.totalGb() == null ? null : new DataPlan(catalogItem, line.totalGb());
+            case VOICE -> line.totalPeriod() == null ? null : new VoicePlan(catalogItem, line.phoneNumber(), line.totalPeriod());
+        };
+        if (lineItem == null) {
+            throw new SQLException("Item " + line.itemCode() + " cannot be added to sale " + line.saleCode() + " as given");
+        }
+        return lineItem;
+    }
+
+    /**
+     * Resolves a set of codes to their ids using chunked <code>in (...)</code> queries.
+     *
+     * @param conn  The connection to run the lookup on.
+     * @param query A query selecting (code, id), ending right before the <code>in</code> list.
+     * @param codes The codes to resolve.
+     * @return A map of code to id, containing only the codes found.
+     */
+    private static Map<String, Integer> lookupIds(Connection conn, String query, Collection<String> codes) throws SQLException {
+        return lookup(conn, query, codes, rs -> rs.getInt(2));
+    }
+
+    /**
+     * Resolves a set of codes to rows using chunked <code>in (...)</code> queries.
+     *
+     * @param conn   The connection to run the lookup on.
+     * @param query  A query selecting the code first, ending right before the <code>in</code> list.
+     * @param codes  The codes to resolve.
+     * @param mapper Maps the current row to a value.
+     * @return A map of code to value, containing only the codes found.
+     */
+    private static <T> Map<String, T> lookup(Connection conn, String query, Collection<String> codes, RowMapper<T> mapper) throws SQLException {
+        Map<String, T> values = new HashMap<>();
+        List<String> codeList = new ArrayList<>(codes);
+        for (int from = 0; from < codeList.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = codeList.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, codeList.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement ps = conn.prepareStatement(query + "(" + placeholders + ")")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        values.put(rs.getString(1), mapper.map(rs));
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private static int requireId(Map<String, Integer> ids, String code, String entity) throws SQLException {
+        return require(ids, code, entity);
+    }
+
+    private static <T> T require(Map<String, T> values, String code, String entity) throws SQLException {
+        T value = values.get(code);
+        if (value == null) {
+            throw new SQLException(entity + " not found: " + code);
+        }
+        return value;
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private record SaleRef(int saleId, int storeId, java.time.LocalDate saleDate) {
+    }
+
+    private record PersonRow(String uuid, String firstName, String lastName, Address address) {
+    }
+
+    private record EmailRow(String personUuid, String address) {
+    }
+
+    private record StoreRow(String storeCode, String managerUuid, Address address) {
+    }
+
+    private record ItemRow(String itemCode, String name, String type, double basePrice) {
+    }
+
+    private record SaleRow(String saleCode, String storeCode, String customerUuid, String salesmanUuid, java.sql.Date saleDate) {
+    }
+
+    private record LineItemRow(String saleCode, String itemCode, boolean isLease, String startDate, String endDate,
+                               Double totalHours, String employeeUuid, Double totalGb, Integer totalPeriod,
+                               String phoneNumber) {
+    }
+}
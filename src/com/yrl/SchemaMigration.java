@@ -0,0 +1,32 @@
+package com.yrl;
+
+import unl.soc.LinePrices;
+import unl.soc.SchemaMigrator;
+
+import java.util.List;
+
+/**
+ * The SchemaMigration class migrates the database to the current schema, stores the prices of item sales
+ * written without them, and then checks, through EXPLAIN, that the point lookups of the application are
+ * all served by an index.
+ * It exits with status 1 when a lookup still scans a whole table.
+ */
+public class SchemaMigration {
+
+    public static void main(String[] args) {
+        int version = SchemaMigrator.migrate();
+        System.out.println("Schema version: " + version);
+        System.out.println("Item sales priced: " + LinePrices.backfill());
+
+        List<String> fullScans = SchemaMigrator.findFullScans();
+        if (fullScans.isEmpty()) {
+            System.out.println("All lookups use an index.");
+            return;
+        }
+        System.out.println("Lookups scanning a whole table:");
+        for (String fullScan : fullScans) {
+            System.out.println("  " + fullScan);
+        }
+        System.exit(1);
+    }
+}
@@ -1,11 +1,18 @@
 package unl.soc;
 
+import com.yrl.AddressCache;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -16,6 +23,11 @@ public class CsvToSql {
     private static final Connection conn = ConnFactory.createConnection();
     private static final DataSource dataSource = ConnFactory.getDataSource();
 
+    /**
+     * Number of rows sent to the database per JDBC batch.
+     */
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * Inserts address data from a CSV file into the database.
      *
@@ -185,7 +197,7 @@ public class CsvToSql {
 
         for (Sale sale : saleList) {
             String uniqueCode = sale.getUniqueCode();
-            String saleDate = sale.getDateTime().toString();
+            Date saleDate = Date.valueOf(sale.getDateTime());
             Person customer = sale.getCustomer();
             Person salesman = sale.getSalesman();
             Store store = sale.getStore();
@@ -202,7 +214,7 @@ public class CsvToSql {
             String insertSQL = "insert into Sale (uniqueCode, saleDate, customerId, salesmanId, storeId) values (?,?,?,?,?)";
             ps = conn.prepareStatement(insertSQL);
             ps.setString(1, uniqueCode);
-            ps.setString(2, saleDate);
+            ps.setDate(2, saleDate);
             if (customerId == null) {
                 throw new NullPointerException();
             }
@@ -221,121 +233,148 @@ public class CsvToSql {
 
     /**
      * Inserts item sale data from a CSV file into the database.
+     * The file is streamed line by line: sale, item and person codes are resolved from key maps loaded
+     * once up front and every record is appended to a JDBC batch, so no Sale or Item objects are built
+     * and memory does not grow with the file size.
      *
      * @throws SQLException if a SQL exception occurs.
      */
     public static void itemSaleSql() throws SQLException {
+        itemSaleSql("data/SaleItems.csv");
+    }
 
-        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-
-        List<Sale> saleProcessedList = DataProcessor.processedSalesList("data/SaleItems.csv");
+    /**
+     * Streams the item sale records of the given CSV file into the database.
+     *
+     * @param path The path to the CSV file containing the item sale records.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    public static void itemSaleSql(String path) throws SQLException {
+        Map<String, Integer> saleIds = loadKeyMap("select uniqueCode, saleId from Sale");
+        Map<String, Integer> itemIds = loadKeyMap("select uniqueCode, itemId from Item");
+        Map<String, Integer> personIds = loadKeyMap("select uuid, personId from Person");
+        Map<String, Item> catalog = new HashMap<>();
+        DataProcessor.forEachItemCSV("data/Items.csv", item -> catalog.put(item.getUniqueCode(), item));
+
+        String insertSQL = "insert into ItemSale (itemId, saleId, type, startDate, endDate, totalGb, totalHours, employeeId, totalPeriod, phoneNumber, "
+                + LinePrices.COLUMNS + ") values (?,?,?,?,?,?,?,?,?,?,?,?,?)";
+        int pending = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(path));
+             PreparedStatement ps = conn.prepareStatement(insertSQL)) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] itemInSaleInfo = line.split(",");
+                if (itemInSaleInfo.length < 2) {
+                    break;
+                }
 
-        for (Sale sale : saleProcessedList) {
-            String saleIdQuery = "select saleId from Sale where uniqueCode=?";
-            Integer saleId = jdbcTemplate.queryForObject(saleIdQuery, Integer.class, sale.getUniqueCode());
-            if (saleId == null) {
-                throw new NullPointerException();
-            }
+                String itemCode = itemInSaleInfo[1];
+                Item catalogItem = Objects.requireNonNull(catalog.get(itemCode), itemCode);
+                ItemType itemType = catalogItem.getType();
+                if (itemType == ItemType.PRODUCT && itemInSaleInfo.length > 2) {
+                    itemType = ItemType.LEASE;
+                }
 
-            List<Item> itemFromSaleList = sale.getItemsList();
-            for (Item item : itemFromSaleList) {
-                PreparedStatement ps;
-                String itemType = DataProcessor.verifyItemType(item);
-                String itemIdQuery = "select itemId from Item where uniqueCode=?";
-                Integer itemId = jdbcTemplate.queryForObject(itemIdQuery, Integer.class, item.getUniqueCode());
-
-                switch (Objects.requireNonNull(itemType)) {
-                    case "V" -> {
-                        VoicePlan itemVoicePlan = (VoicePlan) item;
-
-                        String insertSQL = "insert into ItemSale (itemId, saleId, type, totalPeriod, phoneNumber) values (?,?,?,?,?)";
-                        ps = conn.prepareStatement(insertSQL);
-
-                        ps.setInt(1, itemId);
-                        ps.setInt(2, saleId);
-                        ps.setString(3, itemType);
-                        ps.setDouble(4, itemVoicePlan.getTotalPeriod());
-                        ps.setString(5, itemVoicePlan.getPhoneNumber());
-                        ps.executeUpdate();
-                        ps.close();
-                    }
-                    case "L" -> {
-                        ProductLease itemLease = (ProductLease) item;
-
-                        String insertSQL = "insert into ItemSale (itemId, saleId, type, startDate, endDate) values (?,?,?,?,?)";
-                        ps = conn.prepareStatement(insertSQL);
-
-                        ps.setInt(1, itemId);
-                        ps.setInt(2, saleId);
-                        ps.setString(3, itemType);
-                        ps.setString(4, itemLease.getStartDate().toString());
-                        ps.setString(5, itemLease.getEndDate().toString());
-                        ps.executeUpdate();
-                        ps.close();
+                ps.setInt(1, requireKey(itemIds, itemCode));
+                ps.setInt(2, requireKey(saleIds, itemInSaleInfo[0]));
+                ps.setString(3, String.valueOf(itemType.getCode()));
+                ps.setNull(4, Types.VARCHAR);
+                ps.setNull(5, Types.VARCHAR);
+                ps.setNull(6, Types.DOUBLE);
+                ps.setNull(7, Types.DOUBLE);
+                ps.setNull(8, Types.INTEGER);
+                ps.setNull(9, Types.DOUBLE);
+                ps.setNull(10, Types.VARCHAR);
+
+                // The line item is built only to price it once, at insert time
+                Item lineItem;
+                switch (itemType) {
+                    case LEASE -> {
+                        ps.setString(4, itemInSaleInfo[2]);
+                        ps.setString(5, itemInSaleInfo[3]);
+                        lineItem = new ProductLease(catalogItem, itemInSaleInfo[2], itemInSaleInfo[3]);
                     }
-                    case "D" -> {
-                        DataPlan itemData = (DataPlan) item;
-
-                        String insertSQL = "insert into ItemSale (itemId, saleId,type, totalGb) values (?,?,?,?)";
-                        ps = conn.prepareStatement(insertSQL);
-                        if (itemId == null) {
-                            throw new NullPointerException();
-                        }
-                        ps.setInt(1, itemId);
-                        ps.setInt(2, saleId);
-                        ps.setString(3, itemType);
-                        ps.setDouble(4, itemData.getTotalGB());
-                        ps.executeUpdate();
-                        ps.close();
+                    case DATA -> {
+                        double totalGb = Double.parseDouble(itemInSaleInfo[2]);
+                        ps.setDouble(6, totalGb);
+                        lineItem = new DataPlan(catalogItem, totalGb);
                     }
-                    case "S" -> {
-                        Service itemService = (Service) item;
-
-                        String employeeQueryId = "select personId from Person where uuid=?";
-                        Integer employeeId = jdbcTemplate.queryForObject(employeeQueryId, Integer.class, itemService.getEmployee().getUuid());
-
-                        String insertSQL = "insert into ItemSale (itemId, saleId, type, totalHours, employeeId) values (?,?,?,?,?)";
-                        ps = conn.prepareStatement(insertSQL);
-                        if (itemId == null) {
-                            throw new NullPointerException();
-                        }
-                        ps.setInt(1, itemId);
-                        ps.setInt(2, saleId);
-                        ps.setString(3, itemType);
-                        ps.setDouble(4, itemService.getTotalHours());
-                        ps.setInt(5, employeeId);
-                        ps.executeUpdate();
-                        ps.close();
+                    case SERVICE -> {
+                        double totalHours = Double.parseDouble(itemInSaleInfo[2]);
+                        ps.setDouble(7, totalHours);
+                        ps.setInt(8, requireKey(personIds, itemInSaleInfo[3]));
+                        lineItem = new Service(catalogItem, totalHours, null);
                     }
-                    default -> {
-
-                        String insertSQL = "insert into ItemSale (itemId, saleId, type) values (?,?,?)";
-                        ps = conn.prepareStatement(insertSQL);
-                        ps.setInt(1, itemId);
-                        ps.setInt(2, saleId);
-                        ps.setString(3, itemType);
-                        ps.executeUpdate();
-                        ps.close();
+                    case VOICE -> {
+                        double totalPeriod = Double.parseDouble(itemInSaleInfo[3]);
+                        ps.setString(10, itemInSaleInfo[2]);
+                        ps.setDouble(9, totalPeriod);
+                        lineItem = new VoicePlan(catalogItem, itemInSaleInfo[2], totalPeriod);
                     }
+                    default -> lineItem = new ProductPurchase(catalogItem);
                 }
+                LinePrices.bind(ps, 11, lineItem);
+                ps.addBatch();
+
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads a two column (code, id) query into a map.
+     *
+     * @param query The query selecting the code and the id.
+     * @return A map of codes to ids.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    private static Map<String, Integer> loadKeyMap(String query) throws SQLException {
+        Map<String, Integer> keyMap = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(query);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                keyMap.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return keyMap;
+    }
+
+    private static int requireKey(Map<String, Integer> keyMap, String code) {
+        Integer id = keyMap.get(code);
+        if (id == null) {
+            throw new NullPointerException("Unknown code: " + code);
         }
+        return id;
     }
 
     /**
-     * Drops all tables in the database.
+     * Drops all tables in the database, referencing tables first. SchemaVersion is dropped with them,
+     * so {@link #createDB()} migrates the new tables again.
      *
      * @throws SQLException if a SQL exception occurs.
      */
     public static void cleanDB() throws SQLException {
-        String drop = "drop table if exists Email, ItemSale, Item, Sale, Store, Person, Address";
+        String drop = "drop table if exists SchemaVersion, DataGeneration, StoreDaySummary, StoreSalesSummary, Email, ItemSale, Item, Sale, Store, Person, Address";
         PreparedStatement ps = conn.prepareStatement(drop);
         ps.execute();
         ps.close();
+        AddressCache.invalidate();
+        ItemCatalog.invalidate();
     }
 
     /**
-     * Creates all necessary tables in the database if they do not exist.
+     * Creates all necessary tables in the database if they do not exist,
+     * then migrates them to the current schema with {@link SchemaMigrator}.
      *
      * @throws SQLException if a SQL exception occurs.
      */
@@ -378,10 +417,12 @@ public class CsvToSql {
                 "create table if not exists Sale(" +
                         "saleId int primary key not null auto_increment," +
                         "uniqueCode varchar(255) not null," +
-                        "saleDate varchar(255)," +
+                        "saleDate date not null," +
                         "customerId int not null ," +
                         "salesmanId int not null ," +
                         "storeId int not null ," +
+                        "index saleDateIdx (saleDate)," +
+                        "index storeSaleDateIdx (storeId, saleDate)," +
                         "FOREIGN KEY (customerId) references Person(personId)," +
                         "FOREIGN KEY (salesmanId) references Person(personId)," +
                         "FOREIGN KEY (storeId) references Store(storeId))"
@@ -406,16 +447,21 @@ public class CsvToSql {
                         "employeeId int," +
                         "totalPeriod double," +
                         "phoneNumber varchar(40)," +
+                        "grossPrice decimal(12,2)," +
+                        "tax decimal(12,2)," +
+                        "netPrice decimal(12,2)," +
                         "FOREIGN KEY (itemId) references Item(itemId)," +
                         "FOREIGN KEY (saleId) references Sale(saleId)," +
                         "FOREIGN KEY (employeeId) references Person(personId));"
         );
         ps.executeBatch();
         ps.close();
+        SchemaMigrator.migrate();
     }
 
     /**
-     * Fills the database with data from CSV files.
+     * Fills the database with data from CSV files, then rebuilds the sales summaries
+     * since the bulk inserts bypass their incremental updates.
      *
      * @throws SQLException if a SQL exception occurs.
      */
@@ -425,7 +471,9 @@ public class CsvToSql {
         insertEmailToDB();
         insertStoreDB();
         itemToSql();
+        ItemCatalog.invalidate();
         saleSql();
         itemSaleSql();
+        SalesSummary.rebuild();
     }
 }
\ No newline at end of file
@@ -1,38 +1,74 @@
 package unl.soc;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Data oasis is a singleton that is a helper class for the data loaders classes.
  * It stores the maps loaded from the database to use in the database loader and CSV classes.
  * The class is using a busy loading property
+ * Entities are kept in {@link IntKeyedTable}s indexed by their dense database ids.
+ * When the <code>yrl.snapshot</code> system property names a file, the data is restored from that
+ * {@link DataSnapshot} if it is still current, and the snapshot is rewritten after a database load otherwise.
+ * When the <code>yrl.offheap</code> system property is true, the items of the loaded sales are moved to
+ * {@link OffHeapLineItems} once loaded, so they no longer occupy the heap.
+ * The map getters return read only views of the tables, not copies; the list getters return new lists.
  */
 public class DataOasis {
 
+    private static final Logger LOGGER = LogManager.getLogger(DataOasis.class);
+
+    /**
+     * System property holding the path of the snapshot file used for warm starts
+     */
+    public static final String SNAPSHOT_PROPERTY = "yrl.snapshot";
+
+    /**
+     * System property enabling the off-heap storage of items sold
+     */
+    public static final String OFF_HEAP_PROPERTY = "yrl.offheap";
+
     /**
      * Static variable instance of DataOasis for DataLoading
      */
     private static final DataOasis INSTANCE = new DataOasis();
 
-    private Map<Integer, Address> addressMap;
-    private Map<Integer, Person> personMap;
-    private Map<Integer, Store> storeMap;
-    private Map<Integer, Sale> salesMap;
-    private Map<Integer, Item> itemMap;
-    private Map<Integer, Item> itemSoldMap;
+    private IntKeyedTable<Address> addressMap;
+    private IntKeyedTable<Person> personMap;
+    private IntKeyedTable<Store> storeMap;
+    private IntKeyedTable<Sale> salesMap;
+    private IntKeyedTable<Item> itemMap;
+    private IntKeyedTable<Item> itemSoldMap;
+    private OffHeapLineItems offHeapItems;
 
     private DataOasis() {
-        this.addressMap = new HashMap<>();
-        this.personMap = new HashMap<>();
-        this.storeMap = new HashMap<>();
-        this.salesMap = new HashMap<>();
-        this.itemMap = new HashMap<>();
-        this.itemSoldMap = new HashMap<>();
+        this.addressMap = new IntKeyedTable<>();
+        this.personMap = new IntKeyedTable<>();
+        this.storeMap = new IntKeyedTable<>();
+        this.salesMap = new IntKeyedTable<>();
+        this.itemMap = new IntKeyedTable<>();
+        this.itemSoldMap = new IntKeyedTable<>();
 
-        loadDataFromDB();
+        String snapshot = System.getProperty(SNAPSHOT_PROPERTY);
+        if (snapshot == null) {
+            loadDataFromDB();
+        } else if (!loadDataFromSnapshot(Path.of(snapshot))) {
+            // Queried before the load, so rows changed while loading leave the new snapshot stale
+            DataSnapshot.Watermarks watermarks = DataSnapshot.queryWatermarks();
+            loadDataFromDB();
+            saveSnapshot(Path.of(snapshot), watermarks);
+        }
+        if (Boolean.getBoolean(OFF_HEAP_PROPERTY)) {
+            moveItemsSoldOffHeap();
+        }
     }
 
     public static DataOasis getInstance() {
@@ -43,66 +79,217 @@ public class DataOasis {
      * Loads data from a database into private variables.
      */
     public void loadDataFromDB() {
-        if (this.addressMap.isEmpty() || this.personMap.isEmpty() || this.storeMap.isEmpty() || this.salesMap.isEmpty() || this.itemMap.isEmpty() || this.itemSoldMap.isEmpty()) {
-            this.itemSoldMap = DatabaseLoader.loadAllItemSold();
+        if (this.addressMap.isEmpty() || this.personMap.isEmpty() || this.storeMap.isEmpty() || this.salesMap.isEmpty() || this.itemMap.isEmpty() || getItemSoldCount() == 0) {
+            // One string dictionary for the whole load, dropped once it is done
+            DatabaseLoader.beginBulkLoad();
+            try {
+                // Catalog items first, so items sold reference the same instances
+                this.itemMap = IntKeyedTable.of(DatabaseLoader.loadAllItems());
+
+                this.itemSoldMap = IntKeyedTable.of(DatabaseLoader.loadAllItemSold());
 
-            this.addressMap = DatabaseLoader.loadAllAddress();
+                this.addressMap = IntKeyedTable.of(DatabaseLoader.loadAllAddress());
 
-            this.personMap = DatabaseLoader.loadAllPersons();
+                this.personMap = IntKeyedTable.of(DatabaseLoader.loadAllPersons());
 
-            this.itemMap = DatabaseLoader.loadAllItems();
+                this.salesMap = IntKeyedTable.of(DatabaseLoader.loadAllSales());
 
-            this.salesMap = DatabaseLoader.loadAllSales();
+                this.storeMap = IntKeyedTable.of(DatabaseLoader.loadAllStores());
+            } finally {
+                LOGGER.debug("Deduplicated the strings of the load: {}", DatabaseLoader.endBulkLoad());
+            }
+        }
+    }
 
-            this.storeMap = DatabaseLoader.loadAllStores();
+    /**
+     * Loads data from a snapshot file into private variables, if the file exists and is still current.
+     *
+     * @param path The snapshot file.
+     * @return true if the data was restored from the snapshot.
+     */
+    public boolean loadDataFromSnapshot(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try {
+            DataSnapshot snapshot = DataSnapshot.read(path);
+            if (!snapshot.isCurrent()) {
+                LOGGER.info("Snapshot {} is stale", path);
+                return false;
+            }
+            this.addressMap = IntKeyedTable.of(snapshot.getAddressMap());
+            this.personMap = IntKeyedTable.of(snapshot.getPersonMap());
+            this.itemMap = IntKeyedTable.of(snapshot.getItemMap());
+            this.storeMap = IntKeyedTable.of(snapshot.getStoreMap());
+            this.itemSoldMap = IntKeyedTable.of(snapshot.getItemSoldMap());
+            this.salesMap = IntKeyedTable.of(snapshot.getSalesMap());
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read snapshot {}: {}", path, e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Writes the loaded data to a snapshot file.
+     *
+     * @param path       The snapshot file.
+     * @param watermarks The database marks queried before the data was loaded.
+     */
+    public void saveSnapshot(Path path, DataSnapshot.Watermarks watermarks) {
+        try {
+            DataSnapshot.write(this, path, watermarks);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the items of every loaded sale to off-heap records. Afterwards the items sold map is a read only
+     * view materializing each item when it is read.
+     */
+    public void moveItemsSoldOffHeap() {
+        if (this.offHeapItems != null) {
+            return;
+        }
+        OffHeapLineItems lines = new OffHeapLineItems(this.itemSoldMap.size());
+        this.salesMap.forEachValue(sale -> sale.moveItemsOffHeap(lines));
+        this.offHeapItems = lines;
+        this.itemSoldMap = null;
+        LOGGER.info("Moved {} items sold off-heap ({} bytes)", lines.size(), lines.offHeapBytes());
+    }
+
+    /**
+     * Gets the off-heap records of the items sold.
+     *
+     * @return The records, or null when items sold are kept on the heap.
+     */
+    public OffHeapLineItems getOffHeapLineItems() {
+        return this.offHeapItems;
+    }
+
+    public Address getAddress(int addressId) {
+        return this.addressMap.get(addressId);
+    }
+
+    public Person getPerson(int personId) {
+        return this.personMap.get(personId);
+    }
+
+    public Store getStore(int storeId) {
+        return this.storeMap.get(storeId);
+    }
+
+    public Sale getSale(int saleId) {
+        return this.salesMap.get(saleId);
+    }
+
+    public Item getItem(int itemId) {
+        return this.itemMap.get(itemId);
+    }
+
+    public Item getItemSold(int itemSaleId) {
+        if (this.offHeapItems != null) {
+            int index = this.offHeapItems.indexOf(itemSaleId);
+            return index < 0 ? null : this.offHeapItems.view(index).toItem();
+        }
+        return this.itemSoldMap.get(itemSaleId);
+    }
+
+    public int getAddressCount() {
+        return this.addressMap.size();
+    }
+
+    public int getPersonCount() {
+        return this.personMap.size();
+    }
+
+    public int getStoreCount() {
+        return this.storeMap.size();
+    }
+
+    public int getSaleCount() {
+        return this.salesMap.size();
+    }
+
+    public int getItemCount() {
+        return this.itemMap.size();
+    }
+
+    public int getItemSoldCount() {
+        return this.offHeapItems != null ? this.offHeapItems.size() : this.itemSoldMap.size();
+    }
+
     public Map<Integer, Address> getAddressMap() {
-        return new HashMap<>(this.addressMap);
+        return Collections.unmodifiableMap(this.addressMap.asMap());
     }
 
     public Map<Integer, Person> getPersonMap() {
-        return new HashMap<>(this.personMap);
+        return Collections.unmodifiableMap(this.personMap.asMap());
     }
 
     public Map<Integer, Store> getStoreMap() {
-        return new HashMap<>(this.storeMap);
+        return Collections.unmodifiableMap(this.storeMap.asMap());
     }
 
     public Map<Integer, Sale> getSalesMap() {
-        return new HashMap<>(this.salesMap);
+        return Collections.unmodifiableMap(this.salesMap.asMap());
     }
 
     public Map<Integer, Item> getItemMap() {
-        return new HashMap<>(this.itemMap);
+        return Collections.unmodifiableMap(this.itemMap.asMap());
     }
 
     public Map<Integer, Item> getItemSoldMap() {
-        return new HashMap<>(this.itemSoldMap);
+        if (this.offHeapItems != null) {
+            // Already a read only view, materializing each item when it is read
+            return this.offHeapItems.asMap();
+        }
+        return Collections.unmodifiableMap(this.itemSoldMap.asMap());
+    }
+
+    /**
+     * Hands each loaded sale to the given action, in id order, without copying the sales.
+     *
+     * @param action The action receiving each sale.
+     */
+    public void forEachSale(Consumer<? super Sale> action) {
+        this.salesMap.forEachValue(action);
+    }
+
+    /**
+     * Hands each loaded store to the given action, in id order, without copying the stores.
+     *
+     * @param action The action receiving each store.
+     */
+    public void forEachStore(Consumer<? super Store> action) {
+        this.storeMap.forEachValue(action);
     }
 
     public List<Address> getAddressList() {
-        return new ArrayList<>(this.addressMap.values());
+        return this.addressMap.values();
     }
 
     public List<Item> getItemsSoldList() {
-        return new ArrayList<>(this.itemSoldMap.values());
+        if (this.offHeapItems != null) {
+            return this.offHeapItems.toItems(0, this.offHeapItems.size());
+        }
+        return this.itemSoldMap.values();
     }
 
     public List<Item> getItemsList() {
-        return new ArrayList<>(this.itemMap.values());
+        return this.itemMap.values();
     }
 
     public List<Person> getPersonsList() {
-        return new ArrayList<>(this.personMap.values());
+        return this.personMap.values();
     }
 
     public List<Sale> getSalesList() {
-        return new ArrayList<>(this.salesMap.values());
+        return this.salesMap.values();
     }
 
     public List<Store> getStoresList() {
-        return new ArrayList<>(this.storeMap.values());
+        return this.storeMap.values();
     }
 }
@@ -16,6 +16,9 @@ public class DataPlan extends Item {
     @XStreamOmitField
     private static final double TAX_PERCENTAGE = 0.055;
     @XStreamOmitField
+    private static final ReportFormatter.Layout REPORT_LINE =
+            ReportFormatter.compile("%s (%s) - Data \n %20.2f GB @ $%5.2f / GB \n %60s %9.2f $%9.2f");
+    @XStreamOmitField
     private double totalGB;
     @Expose
     private double costPerGB;
@@ -31,13 +34,13 @@ public class DataPlan extends Item {
     }
 
     public DataPlan(Item item, double totalGB) {
-        super(item.getUniqueCode(), item.getName());
+        super(0, item);
         this.totalGB = totalGB;
         this.costPerGB = item.getBasePrice();
     }
 
     public DataPlan(int id, Item item, double totalGB) {
-        super(id, item.getUniqueCode(), item.getName());
+        super(id, item);
         this.totalGB = totalGB;
         this.costPerGB = item.getBasePrice();
     }
@@ -52,19 +55,29 @@ public class DataPlan extends Item {
     }
 
     @Override
-    public double getGrossPrice() {
+    protected double computeGrossPrice() {
         return Math.round(costPerGB * totalGB * 100) / 100.0;
     }
 
     @Override
-    public double getTotalTax() {
+    protected double computeTotalTax() {
         return Math.round(getGrossPrice() * TAX_PERCENTAGE * 100) / 100.0;
     }
 
+    @Override
+    public ItemType getType() {
+        return ItemType.DATA;
+    }
+
     @Override
     public String toString() {
-        return String.format("%s - %s \n %20.2f GB @ $%5.2f / GB \n %60s %9.2f $%9.2f",
-                getName() + " (" + getUniqueCode() + ")", "Data", getTotalGB(), costPerGB, "$", getTotalTax(), getGrossPrice());
+        return ReportFormatter.render(this::appendTo);
+    }
+
+    @Override
+    void appendTo(ReportFormatter out) {
+        out.line(REPORT_LINE).text(getName()).text(getUniqueCode()).decimal(getTotalGB()).decimal(costPerGB)
+                .text("$").decimal(getTotalTax()).decimal(getGrossPrice());
     }
 
     @Override
@@ -1,15 +1,22 @@
 package unl.soc;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * The DataProcessor class provides methods for processing data from CSV files,
  * including reading sales, items, persons, and stores data,
  * and converting it into maps or lists of objects.
+ * Repeated values such as names, cities, states and item codes are deduplicated through a {@link StringDictionary}
+ * scoped to the read.
  */
 public class DataProcessor {
+    private static final Logger LOGGER = LogManager.getLogger(DataProcessor.class);
 
     /**
      * Fills the provided sales map with items from a CSV file located at the given path.
@@ -41,28 +48,13 @@ public class DataProcessor {
                 String itemCode = itemInSaleInfo.get(1);
                 Sale sale = salesMap.get(saleCode);
                 Item item = itemsMap.get(itemCode);
+                if (item == null) {
+                    LOGGER.warn("Skipping item {} of sale {}: unknown item code", itemCode, saleCode);
+                    continue;
+                }
 
                 // Determine the type of item and add it to the sale
-                if (item instanceof ProductPurchase) {
-                    if (itemInSaleInfo.size() == 2) {
-                        sale.addItem(new ProductPurchase(item));
-                    } else {
-                        String startDate = itemInSaleInfo.get(2);
-                        String endDate = itemInSaleInfo.get(3);
-                        sale.addItem(new ProductLease(item, startDate, endDate));
-                    }
-                } else if (item instanceof Service) {
-                    double totalHours = Double.parseDouble(itemInSaleInfo.get(2));
-                    Person employee = personsMap.get(itemInSaleInfo.get(3));
-                    sale.addItem(new Service(item, totalHours, employee));
-                } else if (item instanceof DataPlan) {
-                    double totalGB = Double.parseDouble(itemInSaleInfo.get(2));
-                    sale.addItem(new DataPlan(item, totalGB));
-                } else if (item instanceof VoicePlan) {
-                    String phoneNumber = itemInSaleInfo.get(2);
-                    double totalPeriod = Double.parseDouble(itemInSaleInfo.get(3));
-                    sale.addItem(new VoicePlan(item, phoneNumber, totalPeriod));
-                }
+                sale.addItem(createItemSold(item, itemInSaleInfo, personsMap));
             }
             return salesMap;
         } catch (FileNotFoundException e) {
@@ -71,6 +63,43 @@ public class DataProcessor {
         }
     }
 
+    /**
+     * Creates the sold item described by a SaleItems.csv record from its catalog item.
+     * Products with dates are leases, every other type reads its own fields.
+     *
+     * @param item           The catalog item being sold.
+     * @param itemInSaleInfo The fields of the CSV record.
+     * @param personsMap     The persons, keyed by UUID, used to resolve service employees.
+     * @return The sold item.
+     */
+    private static Item createItemSold(Item item, List<String> itemInSaleInfo, Map<String, Person> personsMap) {
+        return switch (item.getType()) {
+            case PRODUCT -> itemInSaleInfo.size() == 2
+                    ? new ProductPurchase(item)
+                    : new ProductLease(item, itemInSaleInfo.get(2), itemInSaleInfo.get(3));
+            case SERVICE -> new Service(item, Double.parseDouble(itemInSaleInfo.get(2)), personsMap.get(itemInSaleInfo.get(3)));
+            case DATA -> new DataPlan(item, Double.parseDouble(itemInSaleInfo.get(2)));
+            case VOICE -> new VoicePlan(item, itemInSaleInfo.get(2), Double.parseDouble(itemInSaleInfo.get(3)));
+            case LEASE -> throw new IllegalStateException("Catalog item cannot be a lease: " + item.getUniqueCode());
+        };
+    }
+
+    /**
+     * Builds the Address held by the street, city, state and zipcode fields of a CSV record.
+     * The street is kept as read; the city and state repeat across records and are interned.
+     *
+     * @param fields  The fields of the CSV record.
+     * @param from    The index of the street field.
+     * @param strings The dictionary of the load.
+     * @return The address.
+     */
+    private static Address readAddress(List<String> fields, int from, StringDictionary strings) {
+        return new Address(fields.get(from),
+                strings.intern(fields.get(from + 1)),
+                strings.intern(fields.get(from + 2)),
+                Integer.parseInt(fields.get(from + 3)));
+    }
+
     /**
      * Fills the provided sales map with items from a CSV file located at the given path.
      * Reads items and persons data from separate CSV files to create a comprehensive map of items and persons.
@@ -126,28 +155,13 @@ public class DataProcessor {
                 String itemCode = itemInSaleInfo.get(1);
                 Sale sale = salesMap.get(saleCode);
                 Item item = itemsMap.get(itemCode);
+                if (item == null) {
+                    LOGGER.warn("Skipping item {} of sale {}: unknown item code", itemCode, saleCode);
+                    continue;
+                }
 
                 // Determine the type of item and add it to the sale
-                if (item instanceof ProductPurchase) {
-                    if (itemInSaleInfo.size() == 2) {
-                        sale.addItem(new ProductPurchase(item));
-                    } else {
-                        String startDate = itemInSaleInfo.get(2);
-                        String endDate = itemInSaleInfo.get(3);
-                        sale.addItem(new ProductLease(item, startDate, endDate));
-                    }
-                } else if (item instanceof Service) {
-                    double totalHours = Double.parseDouble(itemInSaleInfo.get(2));
-                    Person employee = personsMap.get(itemInSaleInfo.get(3));
-                    sale.addItem(new Service(item, totalHours, employee));
-                } else if (item instanceof DataPlan) {
-                    double totalGB = Double.parseDouble(itemInSaleInfo.get(2));
-                    sale.addItem(new DataPlan(item, totalGB));
-                } else if (item instanceof VoicePlan) {
-                    String phoneNumber = itemInSaleInfo.get(2);
-                    double totalPeriod = Double.parseDouble(itemInSaleInfo.get(3));
-                    sale.addItem(new VoicePlan(item, phoneNumber, totalPeriod));
-                }
+                sale.addItem(createItemSold(item, itemInSaleInfo, personsMap));
             }
             return salesMap;
         } catch (FileNotFoundException e) {
@@ -208,41 +222,69 @@ public class DataProcessor {
      * @throws RuntimeException if there is an issue reading the file or parsing the data.
      */
     public static Map<String, Item> readItemsCSVtoMap(String path) {
-        try {
-            Scanner s = new Scanner(new File(path));
+        Map<String, Item> codeItemMap = new HashMap<>();
+        forEachItemCSV(path, item -> codeItemMap.put(item.getUniqueCode(), item));
+        return codeItemMap;
+    }
 
-            Map<String, Item> codeItemMap = new HashMap<>();
+    /**
+     * Reads a CSV file containing information about items and hands each Item to the given action
+     * as soon as its line is parsed, in file order.
+     *
+     * @param path   The path to the CSV file.
+     * @param action The action receiving each Item.
+     * @throws RuntimeException if there is an issue reading the file or parsing the data.
+     */
+    public static void forEachItemCSV(String path, Consumer<? super Item> action) {
+        StringDictionary strings = new StringDictionary();
+        forEachItemCSV(path, strings, action);
+        LOGGER.debug("Deduplicated the strings of {}: {}", path, strings);
+    }
 
+    /**
+     * Reads a CSV file containing information about items and hands each Item to the given action
+     * as soon as its line is parsed, in file order, sharing repeated strings through the given dictionary.
+     *
+     * @param path    The path to the CSV file.
+     * @param strings The dictionary of the load the file is part of.
+     * @param action  The action receiving each Item.
+     * @throws RuntimeException if there is an issue reading the file or parsing the data.
+     */
+    public static void forEachItemCSV(String path, StringDictionary strings, Consumer<? super Item> action) {
+        try (Scanner s = new Scanner(new File(path))) {
             s.nextLine();
             while (s.hasNext()) {
                 String line = s.nextLine();
                 List<String> itemsInfo = Arrays.asList(line.split(","));
 
                 if (itemsInfo.size() < 2) {
-                    return codeItemMap;
+                    return;
                 }
 
-                String code = itemsInfo.get(0);
+                String code = strings.intern(itemsInfo.get(0));
                 String type = itemsInfo.get(1);
-                String name = itemsInfo.get(2);
+                String name = strings.intern(itemsInfo.get(2));
                 double baseCost = Double.parseDouble(itemsInfo.get(3));
 
-                Item item = switch (type) {
-                    case "P" -> new ProductPurchase(code, name, baseCost);
-                    case "S" -> new Service(code, name, baseCost);
-                    case "D" -> new DataPlan(code, name, baseCost);
-                    case "V" -> new VoicePlan(code, name, baseCost);
-                    default -> throw new IllegalStateException("Unexpected value: " + type);
+                ItemType itemType = ItemType.lookup(type);
+                // Unknown types fail the read, as they always have
+                if (itemType == null) {
+                    throw new IllegalStateException("Unexpected value: " + type);
+                }
+                Item item = switch (itemType) {
+                    case PRODUCT -> new ProductPurchase(code, name, baseCost);
+                    case SERVICE -> new Service(code, name, baseCost);
+                    case DATA -> new DataPlan(code, name, baseCost);
+                    case VOICE -> new VoicePlan(code, name, baseCost);
+                    case LEASE -> throw new IllegalStateException("Unexpected value: " + type);
                 };
 
-                codeItemMap.put(code, item);
+                action.accept(item);
             }
-            s.close();
-            return codeItemMap;
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         } catch (NoSuchElementException nse) {
-            return new HashMap<>();
+            // Empty file, nothing to read
         }
     }
 
@@ -255,17 +297,50 @@ public class DataProcessor {
      * @throws RuntimeException if there is an issue reading the file or parsing the data.
      */
     public static Map<String, Person> readPersonCSVtoMap(String path) {
-        try {
-            Scanner s = new Scanner(new File(path));
-            Map<String, Person> uuidPersonMap = new HashMap<>();
+        StringDictionary strings = new StringDictionary();
+        Map<String, Person> uuidPersonMap = readPersonCSVtoMap(path, strings);
+        LOGGER.debug("Deduplicated the strings of {}: {}", path, strings);
+        return uuidPersonMap;
+    }
 
+    private static Map<String, Person> readPersonCSVtoMap(String path, StringDictionary strings) {
+        Map<String, Person> uuidPersonMap = new HashMap<>();
+        forEachPersonCSV(path, strings, person -> uuidPersonMap.put(person.getUuid(), person));
+        return uuidPersonMap;
+    }
+
+    /**
+     * Reads a CSV file containing information about persons and hands each Person to the given action
+     * as soon as its line is parsed, in file order.
+     *
+     * @param path   The path to the CSV file.
+     * @param action The action receiving each Person.
+     * @throws RuntimeException if there is an issue reading the file or parsing the data.
+     */
+    public static void forEachPersonCSV(String path, Consumer<? super Person> action) {
+        StringDictionary strings = new StringDictionary();
+        forEachPersonCSV(path, strings, action);
+        LOGGER.debug("Deduplicated the strings of {}: {}", path, strings);
+    }
+
+    /**
+     * Reads a CSV file containing information about persons and hands each Person to the given action
+     * as soon as its line is parsed, in file order, sharing repeated strings through the given dictionary.
+     *
+     * @param path    The path to the CSV file.
+     * @param strings The dictionary of the load the file is part of.
+     * @param action  The action receiving each Person.
+     * @throws RuntimeException if there is an issue reading the file or parsing the data.
+     */
+    public static void forEachPersonCSV(String path, StringDictionary strings, Consumer<? super Person> action) {
+        try (Scanner s = new Scanner(new File(path))) {
             s.nextLine();
             while (s.hasNext()) {
                 String line = s.nextLine();
                 List<String> personData = Arrays.asList(line.split(","));
 
                 if (personData.size() < 2) {
-                    return uuidPersonMap;
+                    return;
                 }
 
                 List<String> emailList = new ArrayList<>();
@@ -274,20 +349,17 @@ public class DataProcessor {
                 }
 
                 Person person = new Person(personData.get(0),
-                        personData.get(1),
-                        personData.get(2),
-                        new Address(personData.get(3), personData.get(4), personData.get(5), Integer.parseInt(personData.get(6))),
+                        strings.intern(personData.get(1)),
+                        strings.intern(personData.get(2)),
+                        readAddress(personData, 3, strings),
                         emailList);
 
-                uuidPersonMap.put(person.getUuid(), person);
+                action.accept(person);
             }
-            s.close();
-            return uuidPersonMap;
-
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         } catch (NoSuchElementException nse) {
-            return new HashMap<>();
+            // Empty file, nothing to read
         }
     }
 
@@ -300,35 +372,64 @@ public class DataProcessor {
      * @throws RuntimeException If the file specified by 'path' is not found.
      */
     public static Map<String, Store> readStoreCSVtoMap(String path) {
-        try {
-            Scanner s = new Scanner(new File(path));
-            Map<String, Store> codeStoreMap = new HashMap<>();
-            Map<String, Person> personMap = readPersonCSVtoMap("data/Persons.csv");
+        // Stores and their managers share the same cities and states
+        StringDictionary strings = new StringDictionary();
+        Map<String, Store> codeStoreMap = new HashMap<>();
+        forEachStoreCSV(path, readPersonCSVtoMap("data/Persons.csv", strings), strings,
+                store -> codeStoreMap.put(store.getStoreCode(), store));
+        LOGGER.debug("Deduplicated the strings of {}: {}", path, strings);
+        return codeStoreMap;
+    }
 
+    /**
+     * Reads a CSV file containing information about stores and hands each Store to the given action
+     * as soon as its line is parsed, in file order.
+     *
+     * @param path      The path to the CSV file.
+     * @param personMap The persons, keyed by UUID, used to resolve the store managers.
+     * @param action    The action receiving each Store.
+     * @throws RuntimeException If the file specified by 'path' is not found.
+     */
+    public static void forEachStoreCSV(String path, Map<String, Person> personMap, Consumer<? super Store> action) {
+        StringDictionary strings = new StringDictionary();
+        forEachStoreCSV(path, personMap, strings, action);
+        LOGGER.debug("Deduplicated the strings of {}: {}", path, strings);
+    }
+
+    /**
+     * Reads a CSV file containing information about stores and hands each Store to the given action
+     * as soon as its line is parsed, in file order, sharing repeated strings through the given dictionary.
+     *
+     * @param path      The path to the CSV file.
+     * @param personMap The persons, keyed by UUID, used to resolve the store managers.
+     * @param strings   The dictionary of the load the file is part of.
+     * @param action    The action receiving each Store.
+     * @throws RuntimeException If the file specified by 'path' is not found.
+     */
+    public static void forEachStoreCSV(String path, Map<String, Person> personMap, StringDictionary strings,
+                                       Consumer<? super Store> action) {
+        try (Scanner s = new Scanner(new File(path))) {
             s.nextLine();
             while (s.hasNext()) {
                 String line = s.nextLine();
                 List<String> storeData = Arrays.asList(line.split(","));
 
                 if (storeData.size() < 2) {
-                    return codeStoreMap;
+                    return;
                 }
 
                 Person manager = personMap.get(storeData.get(1));
 
-                Store store = new Store(storeData.get(0),
-                        new Address(storeData.get(2), storeData.get(3), storeData.get(4), Integer.parseInt(storeData.get(5))),
+                Store store = new Store(strings.intern(storeData.get(0)),
+                        readAddress(storeData, 2, strings),
                         manager);
 
-                codeStoreMap.put(storeData.get(0), store);
+                action.accept(store);
             }
-            s.close();
-            return codeStoreMap;
-
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         } catch (NoSuchElementException nse) {
-            return new HashMap<>();
+            // Empty file, nothing to read
         }
     }
 
@@ -412,19 +513,16 @@ public class DataProcessor {
         return new ArrayList<>(storeMap.values());
     }
 
+    /**
+     * Returns the one letter type code of an item.
+     *
+     * @param item The item.
+     * @return The type code, or null for a null item.
+     * @deprecated Use {@link Item#getType()}.
+     */
+    @Deprecated
     public static String verifyItemType(Item item) {
-        if (item instanceof VoicePlan) {
-            return "V";
-        } else if (item instanceof DataPlan) {
-            return "D";
-        } else if (item instanceof ProductPurchase) {
-            return "P";
-        } else if (item instanceof ProductLease) {
-            return "L";
-        } else if (item instanceof Service) {
-            return "S";
-        }
-        return null;
+        return item == null ? null : String.valueOf(item.getType().getCode());
     }
 
     /**
@@ -1,6 +1,8 @@
 package unl.soc;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -8,18 +10,85 @@ import java.util.Map;
  * The DataReporter class generates various sales reports based on the data loaded from CSV files or a database.
  */
 public class DataReporter {
+
+    /**
+     * Same order as Store::compareStores: by manager's last name and first name, then by total sale value.
+     */
+    static final Comparator<SalesSummary.StoreTotals> STORE_TOTALS_ORDER =
+            Comparator.comparing(SalesSummary.StoreTotals::managerLastName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(SalesSummary.StoreTotals::managerFirstName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(Comparator.comparingDouble(SalesSummary.StoreTotals::getNetTotal).reversed());
+
+    /**
+     * Same order as Sale::compareSales: by net price, highest first.
+     */
+    static final Comparator<SaleTotals> SALE_TOTALS_ORDER = (a, b) -> Double.compare(b.netPrice(), a.netPrice());
+
+    /**
+     * Line layouts of the reports, compiled once.
+     */
+    static final ReportFormatter.Layout SALE_ROW = ReportFormatter.compile("%-9s  %-9s  %-20s  %10d  $%10.2f  $%10.2f\n");
+    static final ReportFormatter.Layout SALE_TOTALS_ROW = ReportFormatter.compile("%54d  $%10.2f  $%10.2f\n\n");
+    static final ReportFormatter.Layout STORE_ROW = ReportFormatter.compile("%-9s  %-20s  %5d  %3s  %8.2f");
+    static final ReportFormatter.Layout STORE_TOTALS_ROW = ReportFormatter.compile("%38d %4s %9.2f\n");
+
+    /**
+     * What the totals by sale report prints about one sale.
+     *
+     * @param saleId       The ID of the sale.
+     * @param saleCode     The unique code of the sale.
+     * @param storeCode    The store code of the store of the sale.
+     * @param customerName The customer, as "last, first".
+     * @param itemCount    The number of items sold.
+     * @param tax          The total tax of the sale.
+     * @param netPrice     The net price of the sale.
+     */
+    record SaleTotals(int saleId, String saleCode, String storeCode, String customerName, int itemCount,
+                      double tax, double netPrice) {
+
+        static SaleTotals of(Sale sale) {
+            return new SaleTotals(sale.getId(), sale.getUniqueCode(), sale.getStore().getStoreCode(),
+                    sale.getCustomer().getLastName() + ", " + sale.getCustomer().getFirstName(),
+                    sale.getItemCount(), sale.getTotalTax(), sale.getNetPrice());
+        }
+    }
     /**
      * Generates a sales report organized by total sales.
+     * Only the printed fields of each sale are read, in one query, without loading any sale.
      *
      * @return A string representing the sales report.
      */
     public static String reportTotalsBySales() {
+        return reportTotalsBySales(SqlAggregates.loadSaleTotals());
+    }
 
-        List<Sale> salesList = DatabaseLoader.loadSaleList();
+    /**
+     * Generates a sales report organized by total sales, covering only the sales made within a date window.
+     *
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return A string representing the sales report.
+     */
+    public static String reportTotalsBySales(LocalDate from, LocalDate to) {
+        return reportTotalsBySales(SqlAggregates.loadSaleTotals(from, to));
+    }
 
-        salesList.sort(Sale::compareSales);
+    /**
+     * Sorts the sale totals, read in sale ID order, like Sale::compareSales sorts the sales.
+     */
+    private static String reportTotalsBySales(List<SaleTotals> rows) {
+        rows.sort(SALE_TOTALS_ORDER);
+        return formatTotalsBySales(rows);
+    }
 
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Formats the sales report organized by total sales.
+     *
+     * @param salesList The sales, already in report order.
+     * @return A string representing the sales report.
+     */
+    static String formatTotalsBySales(Iterable<SaleTotals> salesList) {
+        ReportFormatter sb = new ReportFormatter(4096);
 
         // Print sales report header
         sb.append("Sales Report:\n");
@@ -34,14 +103,14 @@ public class DataReporter {
         double totalPriceSales = 0;
 
         // Print individual sale details and update total sales variables
-        for (Sale sale : salesList) {
-            String saleNum = sale.getUniqueCode();
-            String storeCode = sale.getStore().getStoreCode();
-            String fullName = sale.getCustomer().getLastName() + ", " + sale.getCustomer().getFirstName();
-            int numItems = sale.getItemsList().size();
-            double tax = Math.round(sale.getTotalTax() * 100) / 100.0;
-            double price = Math.round(sale.getNetPrice() * 100) / 100.0;
-            sb.append(String.format("%-9s  %-9s  %-20s  %10d  $%10.2f  $%10.2f\n", saleNum, storeCode, fullName, numItems, tax, price));
+        for (SaleTotals sale : salesList) {
+            String saleNum = sale.saleCode();
+            String storeCode = sale.storeCode();
+            String fullName = sale.customerName();
+            int numItems = sale.itemCount();
+            double tax = Math.round(sale.tax() * 100) / 100.0;
+            double price = Math.round(sale.netPrice() * 100) / 100.0;
+            sb.line(SALE_ROW).text(saleNum).text(storeCode).text(fullName).number(numItems).decimal(tax).decimal(price);
 
             totalItemSales += numItems;
             totalTaxSales += tax;
@@ -50,23 +119,58 @@ public class DataReporter {
 
         // Print total sales summary
         sb.append("+-----------------------------------------------------------------------------------+\n");
-        sb.append(String.format("%54d  $%10.2f  $%10.2f\n\n", totalItemSales, Math.round(100 * totalTaxSales) / 100.0, Math.round(100 * totalPriceSales) / 100.0));
+        sb.line(SALE_TOTALS_ROW).number(totalItemSales)
+                .decimal(Math.round(100 * totalTaxSales) / 100.0).decimal(Math.round(100 * totalPriceSales) / 100.0);
 
         return sb.toString();
     }
 
     /**
      * Generates a sales report organized by store.
+     * The totals are read from the store sales summaries, one row per store, without loading any sale.
      *
      * @return A string representing the store sales report.
      */
     public static String reportTotalsByStore() {
+        return reportTotalsByStore(SalesSummary.loadStoreTotals());
+    }
+
+    /**
+     * Generates a sales report organized by store, counting only the sales made within a date window.
+     * Every store is listed, including the ones without sales in the window.
+     * The totals are read from the store day summaries of the window.
+     *
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return A string representing the store sales report.
+     */
+    public static String reportTotalsByStore(LocalDate from, LocalDate to) {
+        return reportTotalsByStore(SalesSummary.loadStoreTotals(from, to));
+    }
 
-        List<Store> storesList = DatabaseLoader.loadStoreList();
+    /**
+     * Generates the sales report organized by store from totals aggregated by the database over every line item,
+     * without reading the store sales summaries. The report is the same as {@link #reportTotalsByStore()}.
+     *
+     * @return A string representing the store sales report.
+     */
+    public static String reportTotalsByStoreSql() {
+        return reportTotalsByStore(SqlAggregates.loadStoreTotals());
+    }
 
-        storesList.sort(Store::compareStores);
+    private static String reportTotalsByStore(List<SalesSummary.StoreTotals> storesList) {
+        storesList.sort(STORE_TOTALS_ORDER);
+        return formatTotalsByStore(storesList);
+    }
 
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Formats the sales report organized by store.
+     *
+     * @param storesList The store totals, already in report order.
+     * @return A string representing the store sales report.
+     */
+    static String formatTotalsByStore(Iterable<SalesSummary.StoreTotals> storesList) {
+        ReportFormatter sb = new ReportFormatter(4096);
 
         // Print store sales summary
         sb.append("+--------------------------------------------------------+\n" +
@@ -75,13 +179,20 @@ public class DataReporter {
         sb.append("Store      Manager              # Sales   Grand Total\n");
         double totalValue = 0;
         int salesCount = 0;
-        for (Store store : storesList) {
-            sb.append(store.toString()).append("\n");
-            totalValue += store.getTotalSalePrice();
-            salesCount += store.getSales().size();
+        for (SalesSummary.StoreTotals store : storesList) {
+            String managerFullName;
+            if (store.managerLastName() == null) {
+                managerFullName = "No manager.";
+            } else {
+                managerFullName = store.managerFirstName() + " " + store.managerLastName();
+            }
+            sb.line(STORE_ROW).text(store.storeCode()).text(managerFullName).number(store.saleCount()).text("$").decimal(store.getNetTotal());
+            sb.append('\n');
+            totalValue += store.getNetTotal();
+            salesCount += store.saleCount();
         }
         sb.append("+--------------------------------------------------------+\n");
-        sb.append(String.format("%38d %4s %9.2f\n", salesCount, "$", Math.round(totalValue * 100) / 100.0));
+        sb.line(STORE_TOTALS_ROW).number(salesCount).text("$").decimal(Math.round(totalValue * 100) / 100.0);
 
         return sb.toString();
     }
@@ -92,17 +203,38 @@ public class DataReporter {
      * @return A string representing the sales report.
      */
     public static String reportSales() {
+        return reportSales(new ArrayList<>(DatabaseLoader.loadAllSales().values()));
+    }
+
+    /**
+     * Generates a sales report containing details of the sales made within a date window.
+     *
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return A string representing the sales report.
+     */
+    public static String reportSales(LocalDate from, LocalDate to) {
+        return reportSales(new ArrayList<>(DatabaseLoader.loadSales(from, to).values()));
+    }
 
-        List<Sale> salesList = new ArrayList<>(DatabaseLoader.loadAllSales().values());
+    private static String reportSales(List<Sale> salesList) {
+        // Every sale is printed with its items and people, so load them in batches up front
+        DatabaseLoader.prefetchItems(salesList);
+        List<Person> people = new ArrayList<>(2 * salesList.size());
+        for (Sale sale : salesList) {
+            people.add(sale.getCustomer());
+            people.add(sale.getSalesman());
+        }
+        DatabaseLoader.prefetchEmails(people);
 
         salesList.sort(Sale::compareSales);
 
-        StringBuilder sb = new StringBuilder();
+        ReportFormatter sb = new ReportFormatter(4096);
 
         // Print individual sale details
         sb.append("\n");
         for (Sale sale : salesList) {
-            sb.append(sale.toString());
+            sale.appendTo(sb);
             sb.append("\n");
         }
 
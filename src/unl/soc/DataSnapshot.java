@@ -0,0 +1,435 @@
+package unl.soc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Compact binary snapshot of the fully linked in-memory dataset held by {@link DataOasis}.
+ * Addresses, persons with their emails, catalog items, stores, sold items and sales are written
+ * once to disk and read back through a memory-mapped file, so a warm start does not need to
+ * rebuild everything from the database.
+ * <p>
+ * The file starts with a magic number, a format version and the database {@link Watermarks}
+ * captured before the data it holds was loaded: the max id and row count per table, the latest
+ * <code>updatedAt</code> stamp of the tables that have one, and the data generation. A snapshot is
+ * stale as soon as any of those marks differs from the database.
+ */
+public class DataSnapshot {
+
+    private static final Logger LOGGER = LogManager.getLogger(DataSnapshot.class);
+
+    private static final int MAGIC = 0x59524C53; // "YRLS"
+    private static final int VERSION = 3;
+
+    /**
+     * Tables and primary keys whose high-water marks decide whether a snapshot is current.
+     */
+    private static final String[][] TRACKED_TABLES = {
+            {"Address", "addressId"},
+            {"Person", "personId"},
+            {"Email", "emailId"},
+            {"Item", "itemId"},
+            {"Store", "storeId"},
+            {"Sale", "saleId"},
+            {"ItemSale", "itemSaleId"}
+    };
+
+    /**
+     * Tracked tables whose rows are stamped with an <code>updatedAt</code> time on every change.
+     */
+    private static final String[] STAMPED_TABLES = {"Store", "Sale", "ItemSale"};
+
+    private final Watermarks watermarks;
+    private final Map<Integer, Address> addressMap = new HashMap<>();
+    private final Map<Integer, Person> personMap = new HashMap<>();
+    private final Map<Integer, Item> itemMap = new HashMap<>();
+    private final Map<Integer, Store> storeMap = new HashMap<>();
+    private final Map<Integer, Item> itemSoldMap = new HashMap<>();
+    private final Map<Integer, Sale> salesMap = new HashMap<>();
+
+    private DataSnapshot(Watermarks watermarks) {
+        this.watermarks = watermarks;
+    }
+
+    /**
+     * Writes the data currently held by the given DataOasis to a snapshot file.
+     * The file is written next to the target and moved into place once complete.
+     *
+     * @param oasis      The loaded dataset.
+     * @param path       The snapshot file to write.
+     * @param watermarks The marks queried before the dataset was loaded, so rows changed while it was
+     *                   loading make the snapshot stale instead of being missed.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(DataOasis oasis, Path path, Watermarks watermarks) throws IOException {
+        long begin = System.currentTimeMillis();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(watermarks.marks().length);
+            for (long mark : watermarks.marks()) {
+                out.writeLong(mark);
+            }
+            writeString(out, watermarks.generation());
+
+            Map<Integer, Address> addresses = oasis.getAddressMap();
+            out.writeInt(addresses.size());
+            for (Map.Entry<Integer, Address> entry : addresses.entrySet()) {
+                Address address = entry.getValue();
+                out.writeInt(entry.getKey());
+                writeString(out, address.getStreet());
+                writeString(out, address.getCity());
+                writeString(out, address.getState());
+                out.writeInt(address.getZipCode());
+            }
+
+            Map<Integer, Person> persons = oasis.getPersonMap();
+            out.writeInt(persons.size());
+            for (Map.Entry<Integer, Person> entry : persons.entrySet()) {
+                Person person = entry.getValue();
+                out.writeInt(entry.getKey());
+                writeString(out, person.getUuid());
+                writeString(out, person.getFirstName());
+                writeString(out, person.getLastName());
+                out.writeInt(person.getAddress() == null ? -1 : person.getAddress().getId());
+                List<String> emails = person.getEmailList();
+                out.writeInt(emails.size());
+                for (String email : emails) {
+                    writeString(out, email);
+                }
+            }
+
+            Map<Integer, Item> items = oasis.getItemMap();
+            Map<String, Integer> catalogIds = new HashMap<>();
+            out.writeInt(items.size());
+            for (Map.Entry<Integer, Item> entry : items.entrySet()) {
+                Item item = entry.getValue();
+                catalogIds.put(item.getUniqueCode(), entry.getKey());
+                out.writeInt(entry.getKey());
+                out.writeByte(item.getType().getCode());
+                writeString(out, item.getUniqueCode());
+                writeString(out, item.getName());
+                out.writeDouble(item.getBasePrice());
+            }
+
+            Map<Integer, Store> stores = oasis.getStoreMap();
+            out.writeInt(stores.size());
+            for (Map.Entry<Integer, Store> entry : stores.entrySet()) {
+                Store store = entry.getValue();
+                out.writeInt(entry.getKey());
+                writeString(out, store.getStoreCode());
+                out.writeInt(store.getManager() == null ? -1 : store.getManager().getId());
+                out.writeInt(store.getAddress() == null ? -1 : store.getAddress().getId());
+            }
+
+            Map<Integer, Item> itemsSold = oasis.getItemSoldMap();
+            out.writeInt(itemsSold.size());
+            for (Map.Entry<Integer, Item> entry : itemsSold.entrySet()) {
+                out.writeInt(entry.getKey());
+                writeItemSold(out, entry.getValue(), catalogIds);
+            }
+
+            Map<Integer, Sale> sales = oasis.getSalesMap();
+            out.writeInt(sales.size());
+            for (Map.Entry<Integer, Sale> entry : sales.entrySet()) {
+                Sale sale = entry.getValue();
+                out.writeInt(entry.getKey());
+                writeString(out, sale.getUniqueCode());
+                writeString(out, sale.getDateTime().toString());
+                out.writeInt(sale.getCustomer().getId());
+                out.writeInt(sale.getSalesman().getId());
+                out.writeInt(sale.getStore().getId());
+                List<Item> saleItems = sale.getItemsList();
+                out.writeInt(saleItems.size());
+                for (Item item : saleItems) {
+                    out.writeInt(item.getId());
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Wrote snapshot {} in {} ms", path, System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * Reads a snapshot file through a read-only memory mapping and rebuilds the linked dataset.
+     *
+     * @param path The snapshot file to read.
+     * @return The decoded snapshot.
+     * @throws IOException if the file cannot be read or has an unknown format or version.
+     */
+    public static DataSnapshot read(Path path) throws IOException {
+        long begin = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a data snapshot: " + path);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ", expected " + VERSION);
+            }
+            long[] marks = new long[in.getInt()];
+            for (int i = 0; i < marks.length; i++) {
+                marks[i] = in.getLong();
+            }
+            DataSnapshot snapshot = new DataSnapshot(new Watermarks(marks, readString(in)));
+
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                snapshot.addressMap.put(id, new Address(id, readString(in), readString(in), readString(in), in.getInt()));
+            }
+
+            count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                String uuid = readString(in);
+                String firstName = readString(in);
+                String lastName = readString(in);
+                Address address = snapshot.addressMap.get(in.getInt());
+                int emailCount = in.getInt();
+                List<String> emails = new ArrayList<>(emailCount);
+                for (int j = 0; j < emailCount; j++) {
+                    emails.add(readString(in));
+                }
+                snapshot.personMap.put(id, new Person(id, uuid, firstName, lastName, address, emails));
+            }
+
+            count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                ItemType type = ItemType.fromCode((char) in.get());
+                String uniqueCode = readString(in);
+                String name = readString(in);
+                double basePrice = in.getDouble();
+                Item item = switch (type) {
+                    case SERVICE -> new Service(id, uniqueCode, name, basePrice);
+                    case DATA -> new DataPlan(id, uniqueCode, name, basePrice);
+                    case VOICE -> new VoicePlan(id, uniqueCode, name, basePrice);
+                    case PRODUCT -> new ProductPurchase(id, uniqueCode, name, basePrice);
+                    case LEASE -> throw new IOException("Catalog item cannot be a lease: " + uniqueCode);
+                };
+                snapshot.itemMap.put(id, item);
+            }
+
+            count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                String storeCode = readString(in);
+                Person manager = snapshot.personMap.get(in.getInt());
+                Address address = snapshot.addressMap.get(in.getInt());
+                snapshot.storeMap.put(id, new Store(id, storeCode, address, manager));
+            }
+
+            count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                snapshot.itemSoldMap.put(id, snapshot.readItemSold(in, id));
+            }
+
+            count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                String uniqueCode = readString(in);
+                String saleDate = readString(in);
+                Person customer = snapshot.personMap.get(in.getInt());
+                Person salesman = snapshot.personMap.get(in.getInt());
+                Store store = snapshot.storeMap.get(in.getInt());
+                Sale sale = new Sale(id, uniqueCode, store, customer, salesman, saleDate);
+                int itemCount = in.getInt();
+                for (int j = 0; j < itemCount; j++) {
+                    sale.addItem(snapshot.itemSoldMap.get(in.getInt()));
+                }
+                snapshot.salesMap.put(id, sale);
+            }
+
+            LOGGER.info("Read snapshot {} ({} sales, {} items sold) in {} ms", path, snapshot.salesMap.size(), snapshot.itemSoldMap.size(), System.currentTimeMillis() - begin);
+            return snapshot;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Checks whether the database still has the high-water marks recorded in this snapshot.
+     *
+     * @return true if no tracked table gained, lost, re-numbered or re-stamped rows, and the data generation
+     * is the same, since the data of the snapshot was loaded.
+     */
+    public boolean isCurrent() {
+        return this.watermarks.matches(queryWatermarks());
+    }
+
+    public Map<Integer, Address> getAddressMap() {
+        return addressMap;
+    }
+
+    public Map<Integer, Person> getPersonMap() {
+        return personMap;
+    }
+
+    public Map<Integer, Item> getItemMap() {
+        return itemMap;
+    }
+
+    public Map<Integer, Store> getStoreMap() {
+        return storeMap;
+    }
+
+    public Map<Integer, Item> getItemSoldMap() {
+        return itemSoldMap;
+    }
+
+    public Map<Integer, Sale> getSalesMap() {
+        return salesMap;
+    }
+
+    /**
+     * Reads the max id and row count of every tracked table, the latest <code>updatedAt</code> stamp of
+     * every stamped table and the data generation in a single query. Query them before loading the data
+     * a snapshot is written from.
+     *
+     * @return the marks as (max id, count) pairs in {@link #TRACKED_TABLES} order, followed by the stamps in
+     * microseconds in {@link #STAMPED_TABLES} order, with the generation.
+     */
+    public static Watermarks queryWatermarks() {
+        StringJoiner columns = new StringJoiner(", ", "select ", "");
+        for (String[] table : TRACKED_TABLES) {
+            columns.add("(select coalesce(max(" + table[1] + "), 0) from " + table[0] + ")");
+            columns.add("(select count(*) from " + table[0] + ")");
+        }
+        for (String table : STAMPED_TABLES) {
+            columns.add("(select coalesce(cast(unix_timestamp(max(updatedAt)) * 1000000 as signed), 0) from " + table + ")");
+        }
+        columns.add("(select max(generation) from DataGeneration)");
+
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        long[] marks = new long[TRACKED_TABLES.length * 2 + STAMPED_TABLES.length];
+        String generation = null;
+        try {
+            ps = conn.prepareStatement(columns.toString());
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                for (int i = 0; i < marks.length; i++) {
+                    marks[i] = rs.getLong(i + 1);
+                }
+                generation = rs.getString(marks.length + 1);
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error reading snapshot watermarks: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(rs, ps, conn);
+        }
+        return new Watermarks(marks, generation);
+    }
+
+    /**
+     * The database high-water marks a snapshot was loaded at, see {@link #queryWatermarks()}.
+     *
+     * @param marks      The max ids, row counts and latest stamps of the tracked tables.
+     * @param generation The data generation, renewed whenever the database is cleared.
+     */
+    public record Watermarks(long[] marks, String generation) {
+
+        /**
+         * Tells whether these marks are the same as other marks.
+         *
+         * @param other The marks to compare with.
+         * @return true if every mark and the generation are equal.
+         */
+        public boolean matches(Watermarks other) {
+            return Arrays.equals(marks, other.marks) && Objects.equals(generation, other.generation);
+        }
+    }
+
+    private static void writeItemSold(DataOutputStream out, Item item, Map<String, Integer> catalogIds) throws IOException {
+        out.writeByte(item.getType().getCode());
+        out.writeInt(catalogIds.getOrDefault(item.getUniqueCode(), -1));
+        switch (item.getType()) {
+            case LEASE -> {
+                ProductLease lease = (ProductLease) item;
+                writeString(out, lease.getStartDate().toString());
+                writeString(out, lease.getEndDate().toString());
+            }
+            case SERVICE -> {
+                Service service = (Service) item;
+                out.writeDouble(service.getTotalHours());
+                out.writeInt(service.getEmployee() == null ? -1 : service.getEmployee().getId());
+            }
+            case DATA -> out.writeDouble(((DataPlan) item).getTotalGB());
+            case VOICE -> {
+                VoicePlan voicePlan = (VoicePlan) item;
+                writeString(out, voicePlan.getPhoneNumber());
+                out.writeDouble(voicePlan.getTotalPeriod());
+            }
+            default -> {
+            }
+        }
+        // The prices stored when the item was sold, read back instead of repricing at the current catalog price
+        out.writeBoolean(item.hasStoredPrices());
+        if (item.hasStoredPrices()) {
+            out.writeDouble(item.getGrossPrice());
+            out.writeDouble(item.getTotalTax());
+        }
+    }
+
+    private Item readItemSold(ByteBuffer in, int itemSaleId) {
+        ItemType type = ItemType.fromCode((char) in.get());
+        Item catalogItem = itemMap.get(in.getInt());
+        Item item = switch (type) {
+            case LEASE -> new ProductLease(itemSaleId, catalogItem, readString(in), readString(in));
+            case SERVICE -> new Service(itemSaleId, catalogItem, in.getDouble(), personMap.get(in.getInt()));
+            case DATA -> new DataPlan(itemSaleId, catalogItem, in.getDouble());
+            case VOICE -> new VoicePlan(itemSaleId, catalogItem, readString(in), in.getDouble());
+            case PRODUCT -> new ProductPurchase(itemSaleId, catalogItem);
+        };
+        if (in.get() != 0) {
+            item.setStoredPrices(in.getDouble(), in.getDouble());
+        }
+        return item;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
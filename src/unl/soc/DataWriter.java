@@ -2,16 +2,38 @@ package unl.soc;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The DataWriter class writes objects to JSON and XML files.
+ * Files are written one element at a time, so the input can be any Iterator and is never
+ * serialized to a single in-memory document.
+ */
 public class DataWriter {
+
+    /**
+     * Shared Gson instance, only fields annotated with Expose are written.
+     */
+    private static final Gson GSON = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().setPrettyPrinting().create();
+
+    /**
+     * Configured XStream instances, keyed by the class of the first element they were set up for.
+     */
+    private static final Map<Class<?>, XStream> XSTREAMS = new ConcurrentHashMap<>();
+
     /**
      * This method creates a JSON file from a list of objects using the Gson library.
      * The JSON file is written with appropriate formatting.
@@ -20,21 +42,29 @@ public class DataWriter {
      * @param filePath     The file path where the JSON file will be created.
      */
     public static void createJsonFile(List<?> listOfObject, String header, String filePath) {
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().setPrettyPrinting().create();
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            // Add the header to the JSON string.
-            StringBuilder jsonBuilder = new StringBuilder();
-            jsonBuilder.append("{\n");
-            jsonBuilder.append("  \"").append(header).append("\": ");
-
-            // Convert the list of objects to JSON
-            String jsonData = gson.toJson(listOfObject);
-            jsonBuilder.append(jsonData);
-            jsonBuilder.append("\n}");
+        writeJsonStream(listOfObject.iterator(), header, filePath);
+    }
 
-            // Write the JSON string to the file
-            writer.write(jsonBuilder.toString());
+    /**
+     * Streams objects into a JSON file of the form <code>{ "header": [ ... ] }</code>.
+     * Each object is serialized straight into a buffered file writer as it is pulled from the iterator.
+     *
+     * @param objects  The objects to be converted to JSON format.
+     * @param header   The name of the array holding the objects.
+     * @param filePath The file path where the JSON file will be created.
+     */
+    public static void writeJsonStream(Iterator<?> objects, String header, String filePath) {
+        try (BufferedWriter out = Files.newBufferedWriter(Path.of(filePath));
+             JsonWriter writer = GSON.newJsonWriter(out)) {
+            writer.beginObject();
+            writer.name(header);
+            writer.beginArray();
+            while (objects.hasNext()) {
+                Object object = objects.next();
+                GSON.toJson(object, object.getClass(), writer);
+            }
+            writer.endArray();
+            writer.endObject();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -52,13 +82,8 @@ public class DataWriter {
         dataWithHeader.put("header", header);
         dataWithHeader.putAll(mapOfObject);
 
-        Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().setPrettyPrinting().create();
-
-        try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(filePath));
-            String json = gson.toJson(mapOfObject);
-            writer.write(json);
-            writer.close();
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(filePath))) {
+            GSON.toJson(mapOfObject, writer);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -72,45 +97,71 @@ public class DataWriter {
      * @param filePath     The file path where the XML file will be created.
      */
     public static void createXMLFile(List<?> listOfObject, String filePath) {
-        XStream xstream = new XStream();
-        xstream.setMode(XStream.NO_REFERENCES);
+        writeXmlStream(listOfObject.iterator(), filePath);
+    }
 
-        if (listOfObject.isEmpty()) {
-            try {
-                xstream.toXML(listOfObject, new FileWriter(filePath));
+    /**
+     * Streams objects into an XML file through XStream's hierarchical writer.
+     * The root element and the class aliases are chosen from the first object, the same way
+     * {@link #createXMLFile(List, String)} does for a list.
+     *
+     * @param objects  The objects to be converted to XML format.
+     * @param filePath The file path where the XML file will be created.
+     */
+    public static void writeXmlStream(Iterator<?> objects, String filePath) {
+        try (BufferedWriter out = Files.newBufferedWriter(Path.of(filePath))) {
+            if (!objects.hasNext()) {
+                out.write("<list/>");
                 return;
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+            Object first = objects.next();
+            XStream xstream = XSTREAMS.computeIfAbsent(first.getClass(), DataWriter::configureXStream);
+
+            try (ObjectOutputStream xml = xstream.createObjectOutputStream(new PrettyPrintWriter(out), rootName(first.getClass()))) {
+                xml.writeObject(first);
+                while (objects.hasNext()) {
+                    xml.writeObject(objects.next());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        Class<?> listType = listOfObject.get(0).getClass();
+    /**
+     * Builds an XStream for elements of the given type.
+     * It processes annotations from the item classes when the type is an Item subclass.
+     */
+    private static XStream configureXStream(Class<?> listType) {
+        XStream xstream = new XStream();
+        xstream.setMode(XStream.NO_REFERENCES);
 
-        if (listType.getSuperclass().isInstance(listOfObject.get(0)) && listType.getSuperclass() != Object.class) {
+        if (isSubclass(listType)) {
             // Process annotations from item classes, change label in XML file
             xstream.processAnnotations(ProductPurchase.class);
             xstream.processAnnotations(ProductLease.class);
             xstream.processAnnotations(Service.class);
             xstream.processAnnotations(VoicePlan.class);
             xstream.processAnnotations(DataPlan.class);
-
-            //Changes the root of the list to the plural of the superclass name
-            xstream.alias(String.format(listType.getSuperclass().getSimpleName() + "s").toLowerCase(), List.class);
         } else {
             xstream.processAnnotations(listType);
-            //Changes the root of the list to the plural of the class name
-            xstream.alias(String.format(listType.getSimpleName() + "s").toLowerCase(), List.class);
         }
 
         if (listType.getSimpleName().equals("Person")) {
             xstream.alias("email", String.class);
         }
+        return xstream;
+    }
 
-        try {
-            xstream.toXML(listOfObject, new FileWriter(filePath));
+    /**
+     * Root of the document: the plural of the class name, or of the superclass name for subclasses.
+     */
+    private static String rootName(Class<?> listType) {
+        Class<?> named = isSubclass(listType) ? listType.getSuperclass() : listType;
+        return (named.getSimpleName() + "s").toLowerCase();
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private static boolean isSubclass(Class<?> listType) {
+        return listType.getSuperclass() != null && listType.getSuperclass() != Object.class;
     }
-}
\ No newline at end of file
+}
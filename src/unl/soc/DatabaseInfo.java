@@ -16,9 +16,10 @@ public class DatabaseInfo {
     public static final String PASSWORD = "zi9diengahXu";
 
     /**
-     * Connection parameters that may be necessary for server configuration
+     * Connection parameters that may be necessary for server configuration.
+     * Batched inserts are rewritten into multi-row statements by the driver.
      */
-    public static final String PARAMETERS = "";
+    public static final String PARAMETERS = "rewriteBatchedStatements=true";
 
     /**
      * SQL server to connect to
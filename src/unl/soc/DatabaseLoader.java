@@ -10,21 +10,95 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class provides methods to load data from the database into memory objects.
  */
 public class DatabaseLoader {
     private static final Logger LOGGER = LogManager.getLogger(DatabaseLoader.class);
-    private static final DataOasis instance;
+
+    /**
+     * The loaded data once {@link #loadData()} has loaded it, or null before. The loaders of single rows
+     * answer from it when it is loaded, and read the database otherwise.
+     */
+    private static volatile DataOasis instance;
+
+    /**
+     * System property overriding the fetch size of the streaming loaders.
+     */
+    public static final String FETCH_SIZE_PROPERTY = "yrl.fetchsize";
+
+    /**
+     * Fetch size that makes MySQL Connector/J stream rows one at a time instead of buffering the whole result.
+     * A positive fetch size instead reads that many rows per round trip through a server side cursor,
+     * which requires <code>useCursorFetch=true</code> on the connection URL.
+     */
+    public static final int DEFAULT_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /**
+     * Number of parents whose items or e-mails are read per query by the prefetch methods.
+     */
+    private static final int PREFETCH_BATCH_SIZE = 500;
+
+    /**
+     * Dictionary deduplicating the low-cardinality strings read by the bulk load in progress, or null outside of one.
+     */
+    private static volatile StringDictionary strings;
 
 
-    // Configure the Logger and Instances
+    // Configure the Logger
     static {
         Configurator.initialize(new DefaultConfiguration());
         Configurator.setRootLevel(Level.INFO);
-        instance = DataOasis.getInstance();
+    }
+
+    /**
+     * Loads every table into {@link DataOasis}, once, for the loaders returning all the rows of a table.
+     * Only those loaders call it; the others never load the whole database.
+     *
+     * @return The loaded data, or null while DataOasis is itself being loaded through these loaders.
+     */
+    public static DataOasis loadData() {
+        DataOasis oasis = instance;
+        if (oasis == null) {
+            // Null when called back from the DataOasis being constructed on this thread
+            oasis = DataOasis.getInstance();
+            instance = oasis;
+        }
+        return oasis;
+    }
+
+    /**
+     * Starts deduplicating the low-cardinality strings read, for the bulk load about to run.
+     * Must be paired with {@link #endBulkLoad()}.
+     */
+    static void beginBulkLoad() {
+        strings = new StringDictionary();
+    }
+
+    /**
+     * Stops deduplicating the strings read, so the dictionary of the bulk load can be dropped.
+     *
+     * @return The dictionary of the load that ended, with its dedupe stats, or null if none was in progress.
+     */
+    static StringDictionary endBulkLoad() {
+        StringDictionary dictionary = strings;
+        strings = null;
+        return dictionary;
+    }
+
+    /**
+     * Deduplicates a string read during a bulk load; outside of one, returns it as it is.
+     */
+    private static String intern(String value) {
+        StringDictionary dictionary = strings;
+        return dictionary == null ? value : dictionary.intern(value);
     }
 
     /**
@@ -34,8 +108,11 @@ public class DatabaseLoader {
      * @return The Address object loaded from the database.
      */
     public static Address loadAddress(int addressId) {
-        if ((instance != null) && !instance.getAddressMap().isEmpty()) {
-            return instance.getAddressMap().get(addressId);
+        if (instance != null) {
+            Address cached = instance.getAddress(addressId);
+            if (cached != null) {
+                return cached;
+            }
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
@@ -53,11 +130,7 @@ public class DatabaseLoader {
             ps.setInt(1, addressId);
             rs = ps.executeQuery();
             if (rs.next()) {
-                int zipcode = rs.getInt("zipcode");
-                String state = rs.getString("state");
-                String city = rs.getString("city");
-                String street = rs.getString("street");
-                address = new Address(addressId, street, city, state, zipcode);
+                address = readAddress(addressId, rs);
             }
         } catch (SQLException e) {
             LOGGER.error("Error parsing address {}: {}", addressId, e);
@@ -68,19 +141,31 @@ public class DatabaseLoader {
         return address;
     }
 
+    /**
+     * Builds an Address from the current row of a result set holding its zipcode, state, city and street.
+     */
+    private static Address readAddress(int addressId, ResultSet rs) throws SQLException {
+        int zipcode = rs.getInt("zipcode");
+        String state = intern(rs.getString("state"));
+        String city = intern(rs.getString("city"));
+        String street = rs.getString("street");
+        return new Address(addressId, street, city, state, zipcode);
+    }
+
     /**
      * Loads all Address objects from the database.
      *
      * @return A map of address IDs to Address objects.
      */
     public static Map<Integer, Address> loadAllAddress() {
-        if ((instance != null) && !instance.getAddressMap().isEmpty()) {
-            return instance.getAddressMap();
+        DataOasis oasis = loadData();
+        if ((oasis != null) && oasis.getAddressCount() > 0) {
+            return oasis.getAddressMap();
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Map <Integer, Address> addressMapResult = new HashMap<>();
+        Map <Integer, Address> addressMapResult = new IntKeyedTable<Address>().asMap();
 
         String query = """
                 select addressId from Address;
@@ -119,8 +204,11 @@ public class DatabaseLoader {
      * @return The Person object loaded from the database.
      */
     public static Person loadPerson(int personId) {
-        if ((instance != null) && !instance.getPersonMap().isEmpty()) {
-            return instance.getPersonMap().get(personId);
+        if (instance != null) {
+            Person cached = instance.getPerson(personId);
+            if (cached != null) {
+                return cached;
+            }
         }
 
         Connection conn = ConnFactory.createConnection();
@@ -137,12 +225,7 @@ public class DatabaseLoader {
             ps.setInt(1, personId);
             rs = ps.executeQuery();
             if (rs.next()) {
-                String uuid = rs.getString("uuid");
-                String firstName = rs.getString("firstName");
-                String lastName = rs.getString("lastName");
-                Address address = loadAddress(rs.getInt("addressId"));
-                List<String> emails = loadEmails(personId);
-                person = new Person(personId, uuid, firstName, lastName, address, emails);
+                person = readPerson(personId, rs);
             }
         } catch (SQLException e) {
             LOGGER.error("Error parsing person {}: {}", personId, e);
@@ -153,6 +236,27 @@ public class DatabaseLoader {
         return person;
     }
 
+    /**
+     * Builds a Person from the current row of a result set holding its uuid, names and addressId.
+     * The address is read on its own connection; the e-mails are read when first used.
+     */
+    private static Person readPerson(int personId, ResultSet rs) throws SQLException {
+        return readPerson(personId, loadAddress(rs.getInt("addressId")), rs);
+    }
+
+    /**
+     * Builds a Person living at the given address from the current row of a result set holding its uuid and names.
+     * The e-mails are read when first used.
+     */
+    private static Person readPerson(int personId, Address address, ResultSet rs) throws SQLException {
+        String uuid = rs.getString("uuid");
+        String firstName = intern(rs.getString("firstName"));
+        String lastName = intern(rs.getString("lastName"));
+        Person person = new Person(personId, uuid, firstName, lastName, address);
+        person.setEmailsLoader(DatabaseLoader::loadEmails);
+        return person;
+    }
+
     /**
      * Loads a Person object from the database based on the given person uuid.
      *
@@ -176,11 +280,11 @@ public class DatabaseLoader {
             rs = ps.executeQuery();
             if (rs.next()) {
                 int personId = rs.getInt("personId");
-                String firstName = rs.getString("firstName");
-                String lastName = rs.getString("lastName");
+                String firstName = intern(rs.getString("firstName"));
+                String lastName = intern(rs.getString("lastName"));
                 Address address = loadAddress(rs.getInt("addressId"));
-                List<String> emails = loadEmails(personId);
-                person = new Person(personId, uuid, firstName, lastName, address, emails);
+                person = new Person(personId, uuid, firstName, lastName, address);
+                person.setEmailsLoader(DatabaseLoader::loadEmails);
             }
         } catch (SQLException e) {
             LOGGER.error("Error parsing person {}: {}", uuid, e);
@@ -192,37 +296,71 @@ public class DatabaseLoader {
     }
 
     /**
-     * Loads an e-mail given a personId
+     * Loads the e-mails of a person, in the order they were added.
      *
-     * @param personId
+     * @param person The person, loaded without its e-mails.
      * @return emailList
      */
-    private static List<String> loadEmails(int personId){
-        Connection conn = ConnFactory.createConnection();
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-
-        List<String> emailList = new ArrayList<>();
-
-        String query = "select emailId, address from Email where personId = ?;";
+    private static List<String> loadEmails(Person person) {
+        return loadEmails(List.of(person.getId())).getOrDefault(person.getId(), new ArrayList<>());
+    }
 
+    /**
+     * Loads the e-mails of many persons, with one query per {@link #PREFETCH_BATCH_SIZE} persons.
+     *
+     * @param personIds The IDs of the persons.
+     * @return The e-mails of each person that has any, in the order they were added.
+     */
+    private static Map<Integer, List<String>> loadEmails(List<Integer> personIds) {
+        Connection conn = ConnFactory.createConnection();
+        Map<Integer, List<String>> emails = new HashMap<>();
         try {
-            ps = conn.prepareStatement(query);
-            ps.setInt(1, personId);
-            rs = ps.executeQuery();
-            if (rs.next()) {
-                int emailId = rs.getInt("emailId");
-                String address = rs.getString("address");
-                emailList.add(address);
+            for (int from = 0; from < personIds.size(); from += PREFETCH_BATCH_SIZE) {
+                List<Integer> batch = personIds.subList(from, Math.min(from + PREFETCH_BATCH_SIZE, personIds.size()));
+                String query = "select personId, address from Email where personId in (" + placeholders(batch.size()) + ") order by emailId";
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        ps.setInt(i + 1, batch.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            emails.computeIfAbsent(rs.getInt("personId"), id -> new ArrayList<>()).add(rs.getString("address"));
+                        }
+                    }
+                }
             }
         } catch (SQLException e) {
-            LOGGER.error("Error parsing person {}: {}", personId, e);
+            LOGGER.error("Error loading e-mails of {} persons: ", personIds.size(), e);
             throw new RuntimeException(e);
         } finally {
-            ConnFactory.closeConnection(rs, ps, conn);
+            ConnFactory.closeConnection(conn);
         }
-        return emailList;
+        return emails;
+    }
 
+    /**
+     * Loads, in batches, the e-mails of every given person whose e-mails were not used yet,
+     * instead of one query per person when they are first used.
+     *
+     * @param persons The persons about to be used together.
+     */
+    public static void prefetchEmails(Collection<Person> persons) {
+        Map<Integer, List<Person>> pending = new LinkedHashMap<>();
+        for (Person person : persons) {
+            if (person != null && person.isEmailsLoadPending()) {
+                pending.computeIfAbsent(person.getId(), id -> new ArrayList<>()).add(person);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<String>> emails = loadEmails(new ArrayList<>(pending.keySet()));
+        pending.forEach((personId, samePerson) -> {
+            for (Person person : samePerson) {
+                person.setLoadedEmails(emails.getOrDefault(personId, List.of()));
+            }
+        });
+        LOGGER.debug("Prefetched the e-mails of {} persons", pending.size());
     }
 
     /**
@@ -231,13 +369,14 @@ public class DatabaseLoader {
      * @return A map of person IDs to Person objects.
      */
     public static Map<Integer, Person> loadAllPersons() {
-        if ((instance != null) && !instance.getPersonMap().isEmpty()) {
-            return instance.getPersonMap();
+        DataOasis oasis = loadData();
+        if ((oasis != null) && oasis.getPersonCount() > 0) {
+            return oasis.getPersonMap();
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Map <Integer, Person> personMapResult = new HashMap<>();
+        Map <Integer, Person> personMapResult = new IntKeyedTable<Person>().asMap();
 
         String query = """
                 select personId from Person;
@@ -255,6 +394,7 @@ public class DatabaseLoader {
         } finally {
             ConnFactory.closeConnection(rs, ps, conn);
         }
+        prefetchEmails(personMapResult.values());
         LOGGER.debug("Successfully loaded {} persons", personMapResult.size());
         return personMapResult;
     }
@@ -275,8 +415,11 @@ public class DatabaseLoader {
      * @return The Store object loaded from the database without its sales.
      */
     private static Store loadRawStore(int storeId) {
-        if ((instance != null) && !instance.getStoreMap().isEmpty()) {
-            return instance.getStoreMap().get(storeId);
+        if (instance != null) {
+            Store cached = instance.getStore(storeId);
+            if (cached != null) {
+                return cached;
+            }
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
@@ -292,7 +435,7 @@ public class DatabaseLoader {
             ps.setInt(1, storeId);
             rs = ps.executeQuery();
             if (rs.next()) {
-                String storeCode = rs.getString("storeCode");
+                String storeCode = intern(rs.getString("storeCode"));
                 int managerId = rs.getInt("managerId");
                 int addressId = rs.getInt("addressId");
                 Address address = loadAddress(addressId);
@@ -382,16 +525,17 @@ public class DatabaseLoader {
      * @return A map of store IDs to Store objects.
      */
     public static Map<Integer, Store> loadAllStores() {
-        if ((instance != null) && !instance.getStoreMap().isEmpty()) {
-            Map<Integer, Store> storeMap = instance.getStoreMap();
-            updateStoreMapFromSalesMap(storeMap);
+        DataOasis oasis = loadData();
+        if ((oasis != null) && oasis.getStoreCount() > 0) {
+            Map<Integer, Store> storeMap = oasis.getStoreMap();
+            updateStoreMapFromSalesMap(oasis, storeMap);
             return storeMap;
         }
 
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Map <Integer, Store> storeMapResult = new HashMap<>();
+        Map <Integer, Store> storeMapResult = new IntKeyedTable<Store>().asMap();
 
         String query = """
                 select storeId from Store;
@@ -447,19 +591,7 @@ public class DatabaseLoader {
             ps.setString(1, itemCode);
             rs = ps.executeQuery();
             if (rs.next()) {
-                int itemId = rs.getInt("itemId");
-                double basePrice = rs.getDouble("basePrice");
-                String name = rs.getString("name");
-                String type = rs.getString("type");
-
-                // Switch case to determine the type of item sale
-                item = switch (type) {
-                    case "S" -> new Service(itemId, itemCode, name, basePrice);
-                    case "D" -> new DataPlan(itemId, itemCode, name, basePrice);
-                    case "V" -> new VoicePlan(itemId, itemCode, name, basePrice);
-                    case "P" -> new ProductPurchase(itemId, itemCode, name, basePrice);
-                    default -> null;
-                };
+                item = readItem(rs.getInt("itemId"), itemCode, rs);
             }
         } catch (SQLException e) {
             LOGGER.error("Error loading item {}: ", itemCode, e);
@@ -467,6 +599,9 @@ public class DatabaseLoader {
         } finally {
             ConnFactory.closeConnection(rs, ps, conn);
         }
+        if (item != null) {
+            ItemCatalog.putIfAbsent(item);
+        }
         return item;
     }
 
@@ -477,8 +612,12 @@ public class DatabaseLoader {
      * @return The Item object loaded from the database.
      */
     public static Item loadItem(int itemId) {
-        if ((instance != null) && !instance.getItemMap().isEmpty()) {
-            return instance.getItemMap().get(itemId);
+        Item cached = ItemCatalog.get(itemId);
+        if (cached == null && instance != null) {
+            cached = instance.getItem(itemId);
+        }
+        if (cached != null) {
+            return cached;
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
@@ -495,19 +634,7 @@ public class DatabaseLoader {
             ps.setInt(1, itemId);
             rs = ps.executeQuery();
             if (rs.next()) {
-                String uniqueCode = rs.getString("uniqueCode");
-                double basePrice = rs.getDouble("basePrice");
-                String name = rs.getString("name");
-                String type = rs.getString("type");
-
-                // Switch case to determine the type of item sale
-                item = switch (type) {
-                    case "S" -> new Service(itemId, uniqueCode, name, basePrice);
-                    case "D" -> new DataPlan(itemId, uniqueCode, name, basePrice);
-                    case "V" -> new VoicePlan(itemId, uniqueCode, name, basePrice);
-                    case "P" -> new ProductPurchase(itemId, uniqueCode, name, basePrice);
-                    default -> null;
-                };
+                item = readItem(itemId, intern(rs.getString("uniqueCode")), rs);
             }
         } catch (SQLException e) {
             LOGGER.error("Error loading item {}: ", itemId, e);
@@ -515,6 +642,34 @@ public class DatabaseLoader {
         } finally {
             ConnFactory.closeConnection(rs, ps, conn);
         }
+        if (item != null) {
+            ItemCatalog.put(item);
+        }
+        return item;
+    }
+
+    /**
+     * Builds a catalog Item from the current row of a result set holding its base price, name and type.
+     *
+     * @return The item, or null if it is of an unknown type.
+     */
+    private static Item readItem(int itemId, String uniqueCode, ResultSet rs) throws SQLException {
+        double basePrice = rs.getDouble("basePrice");
+        String name = intern(rs.getString("name"));
+        String type = rs.getString("type");
+
+        // Switch case to determine the type of item sale, items of an unknown type are not loaded
+        ItemType itemType = ItemType.lookup(type);
+        Item item = itemType == null ? null : switch (itemType) {
+            case SERVICE -> new Service(itemId, uniqueCode, name, basePrice);
+            case DATA -> new DataPlan(itemId, uniqueCode, name, basePrice);
+            case VOICE -> new VoicePlan(itemId, uniqueCode, name, basePrice);
+            case PRODUCT -> new ProductPurchase(itemId, uniqueCode, name, basePrice);
+            default -> null;
+        };
+        if (item == null) {
+            LOGGER.warn("Skipping item {} of unexpected type {}", uniqueCode, type);
+        }
         return item;
     }
 
@@ -524,13 +679,14 @@ public class DatabaseLoader {
      * @return A map of item IDs to Item objects.
      */
     public static Map<Integer, Item> loadAllItems() {
-        if ((instance != null) && !instance.getItemMap().isEmpty()) {
-            return instance.getItemMap();
+        DataOasis oasis = loadData();
+        if ((oasis != null) && oasis.getItemCount() > 0) {
+            return oasis.getItemMap();
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Map<Integer, Item> itemMapResult = new HashMap<>();
+        Map<Integer, Item> itemMapResult = new IntKeyedTable<Item>().asMap();
 
         String query = """
                 select itemId from Item;
@@ -569,8 +725,11 @@ public class DatabaseLoader {
      * @return The Item object sold loaded from the database.
      */
     public static Item loadItemSold(int itemSaleId) {
-        if ((instance != null) && !instance.getItemSoldMap().isEmpty()) {
-            return instance.getItemSoldMap().get(itemSaleId);
+        if (instance != null) {
+            Item cached = instance.getItemSold(itemSaleId);
+            if (cached != null) {
+                return cached;
+            }
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
@@ -578,7 +737,8 @@ public class DatabaseLoader {
         Item item = null;
 
         String query = """
-                select i.itemId, i.type, startDate, endDate, totalGb, totalHours, employeeId, totalPeriod, phoneNumber, isLease from Item i
+                select i.itemId, i.type, startDate, endDate, totalGb, totalHours, employeeId, totalPeriod, phoneNumber, isLease,
+                grossPrice, tax from Item i
                 left join ItemSale its on its.itemId = i.itemId
                 where its.itemSaleId = ?;
                 """;
@@ -587,20 +747,7 @@ public class DatabaseLoader {
             ps.setInt(1, itemSaleId);
             rs = ps.executeQuery();
             if (rs.next()) {
-                String type = rs.getString("type");
-                item = loadItem(rs.getInt("itemId"));
-
-                if (type.equals("P") && rs.getBoolean("isLease")) {
-                    item = new ProductLease(itemSaleId, item, rs.getString("startDate"), rs.getString("endDate"));
-                } else {
-                    // Switch case to determine the type of item sale to correctly instantiate the item instance.
-                    item = switch (type) {
-                        case "V" -> new VoicePlan(itemSaleId, item, rs.getString("phoneNumber"), rs.getDouble("totalPeriod"));
-                        case "S" -> new Service(itemSaleId, item, rs.getDouble("totalHours"), loadPerson(rs.getInt("employeeId")));
-                        case "D" -> new DataPlan(itemSaleId, item, rs.getDouble("totalGb"));
-                        default -> item;
-                    };
-                }
+                item = readItemSold(itemSaleId, rs);
             }
         } catch (SQLException e) {
             LOGGER.error("Error loading item sold {}: ", itemSaleId, e);
@@ -611,19 +758,64 @@ public class DatabaseLoader {
         return item;
     }
 
+    /**
+     * Builds an Item sold from the current row of a result set joining ItemSale to Item.
+     * Prices stored on the row are handed to the item, so they are not computed again.
+     *
+     * @return The item sold, or null if its catalog item is of an unknown type.
+     */
+    private static Item readItemSold(int itemSaleId, ResultSet rs) throws SQLException {
+        // The catalog item is shared by every item sold referencing it
+        return readItemSold(itemSaleId, loadItem(rs.getInt("itemId")), DatabaseLoader::loadPerson, rs);
+    }
+
+    /**
+     * Builds an Item sold of the given catalog item from the current row of a result set joining ItemSale to Item.
+     *
+     * @param item      The catalog item sold.
+     * @param employees Resolves the employee of a service by person ID.
+     * @return The item sold, or null if its catalog item is of an unknown type.
+     */
+    private static Item readItemSold(int itemSaleId, Item item, IntFunction<Person> employees, ResultSet rs) throws SQLException {
+        ItemType type = ItemType.lookup(rs.getString("type"));
+        if (type == null || type == ItemType.LEASE) {
+            LOGGER.warn("Skipping item sold {} of unexpected type {}", itemSaleId, rs.getString("type"));
+            return null;
+        }
+        if (type == ItemType.PRODUCT && rs.getBoolean("isLease")) {
+            type = ItemType.LEASE;
+        }
+
+        // Switch case to determine the type of item sale to correctly instantiate the item instance.
+        Item itemSold = switch (type) {
+            case LEASE -> new ProductLease(itemSaleId, item, rs.getString("startDate"), rs.getString("endDate"));
+            case VOICE -> new VoicePlan(itemSaleId, item, rs.getString("phoneNumber"), rs.getDouble("totalPeriod"));
+            case SERVICE -> new Service(itemSaleId, item, rs.getDouble("totalHours"), employees.apply(rs.getInt("employeeId")));
+            case DATA -> new DataPlan(itemSaleId, item, rs.getDouble("totalGb"));
+            case PRODUCT -> new ProductPurchase(itemSaleId, item);
+        };
+
+        double grossPrice = rs.getDouble("grossPrice");
+        if (!rs.wasNull()) {
+            itemSold.setStoredPrices(grossPrice, rs.getDouble("tax"));
+        }
+        return itemSold;
+    }
+
     /**
      * Loads all Item objects sold from the database.
      *
      * @return A map of item sale IDs to Item objects sold.
      */
     public static Map<Integer, Item> loadAllItemSold() {
-        if ((instance != null) && !instance.getItemSoldMap().isEmpty()) {
-            return instance.getItemSoldMap();
+        DataOasis oasis = loadData();
+        if ((oasis != null) && oasis.getItemSoldCount() > 0) {
+            return oasis.getItemSoldMap();
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Map<Integer, Item> itemMapResult = new HashMap<>();
+        Map<Integer, Item> itemMapResult = new IntKeyedTable<Item>().asMap();
 
         String query = """
                 select itemSaleId from ItemSale;
@@ -662,9 +854,20 @@ public class DatabaseLoader {
      * @return The Sale object loaded from the database.
      */
     public static Sale loadSale(int saleId) {
-        if ((instance != null) && !instance.getSalesMap().isEmpty()) {
-            return instance.getSalesMap().get(saleId);
+        if ((instance != null) && instance.getSaleCount() > 0) {
+            return instance.getSale(saleId);
         }
+        return reloadSale(saleId);
+    }
+
+    /**
+     * Loads a Sale object and its items from the database, bypassing the loaded data, so items
+     * added to the sale since the data was loaded are included.
+     *
+     * @param saleId The ID of the sale to load.
+     * @return The Sale object loaded from the database, or null if there is none.
+     */
+    public static Sale reloadSale(int saleId) {
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -681,14 +884,7 @@ public class DatabaseLoader {
             rs = ps.executeQuery();
 
             if (rs.next()) {
-                String uniqueCode = rs.getString("uniqueCode");
-                String saleDate = rs.getString("saleDate");
-                Person customer = loadPerson(rs.getInt("customerId"));
-                Person salesman = loadPerson(rs.getInt("salesmanId"));
-                Store store = loadRawStore(rs.getInt("storeId"));
-                sale = new Sale(saleId, uniqueCode, store, customer, salesman, saleDate);
-
-                loadItemSale(sale);
+                sale = readSale(saleId, rs);
             }
 
         } catch (SQLException e) {
@@ -700,6 +896,21 @@ public class DatabaseLoader {
         return sale;
     }
 
+    /**
+     * Builds a Sale from the current row of a result set holding its code, date, people and store.
+     * The people and store are read on their own connections; the items are read when first used.
+     */
+    private static Sale readSale(int saleId, ResultSet rs) throws SQLException {
+        String uniqueCode = rs.getString("uniqueCode");
+        String saleDate = rs.getString("saleDate");
+        Person customer = loadPerson(rs.getInt("customerId"));
+        Person salesman = loadPerson(rs.getInt("salesmanId"));
+        Store store = loadRawStore(rs.getInt("storeId"));
+        Sale sale = new Sale(saleId, uniqueCode, store, customer, salesman, saleDate);
+        sale.setItemsLoader(DatabaseLoader::loadItems);
+        return sale;
+    }
+
     /**
      * Loads a Sale object from the database based on the given sale unique code.
      *
@@ -730,8 +941,7 @@ public class DatabaseLoader {
                 Person salesman = loadPerson(rs.getInt("salesmanId"));
                 Store store = loadRawStore(rs.getInt("storeId"));
                 sale = new Sale(saleId, uniqueCode, store, customer, salesman, saleDate);
-
-                loadItemSale(sale);
+                sale.setItemsLoader(DatabaseLoader::loadItems);
             }
 
         } catch (SQLException e) {
@@ -744,30 +954,84 @@ public class DatabaseLoader {
     }
 
     /**
-     * Loads an item that is being sold and ads it to the appropriate sale.
+     * Loads the items sold in a sale, in the order they were added.
      *
-     * @param sale
+     * @param sale The sale, loaded without its items.
+     * @return The items of the sale.
      */
-    private static void loadItemSale(Sale sale){
-        Connection conn = ConnFactory.createConnection();
-        PreparedStatement ps = null;
-        ResultSet rs = null;
+    private static List<Item> loadItems(Sale sale) {
+        return loadItems(List.of(sale.getId())).getOrDefault(sale.getId(), new ArrayList<>());
+    }
 
-        String query = "select itemSaleId from ItemSale where saleId = ?";
+    /**
+     * Loads the items sold in many sales, with one query per {@link #PREFETCH_BATCH_SIZE} sales.
+     *
+     * @param saleIds The IDs of the sales.
+     * @return The items of each sale that has any, in the order they were added.
+     */
+    private static Map<Integer, List<Item>> loadItems(List<Integer> saleIds) {
+        Connection conn = ConnFactory.createConnection();
+        Map<Integer, List<Item>> items = new HashMap<>();
         try {
-            ps = conn.prepareStatement(query);
-            ps.setInt(1, sale.getId());
-            rs = ps.executeQuery();
-            while (rs.next()) {
-                Item item = loadItemSold(rs.getInt("itemSaleId"));
-                sale.addItem(item);
+            for (int from = 0; from < saleIds.size(); from += PREFETCH_BATCH_SIZE) {
+                List<Integer> batch = saleIds.subList(from, Math.min(from + PREFETCH_BATCH_SIZE, saleIds.size()));
+                String query = """
+                        select its.itemSaleId, its.saleId, i.itemId, i.type, startDate, endDate, totalGb, totalHours, employeeId, totalPeriod, phoneNumber, isLease,
+                        grossPrice, tax from ItemSale its
+                        join Item i on i.itemId = its.itemId
+                        where its.saleId in (%s)
+                        order by its.itemSaleId
+                        """.formatted(placeholders(batch.size()));
+                try (PreparedStatement ps = conn.prepareStatement(query)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        ps.setInt(i + 1, batch.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Item item = readItemSold(rs.getInt("itemSaleId"), rs);
+                            if (item != null) {
+                                items.computeIfAbsent(rs.getInt("saleId"), id -> new ArrayList<>()).add(item);
+                            }
+                        }
+                    }
+                }
             }
         } catch (SQLException e) {
-            LOGGER.error("Error loading item to sale {}: ", e.getMessage());
+            LOGGER.error("Error loading items of {} sales: ", saleIds.size(), e);
             throw new RuntimeException(e);
         } finally {
-            ConnFactory.closeConnection(rs, ps, conn);
+            ConnFactory.closeConnection(conn);
         }
+        return items;
+    }
+
+    /**
+     * Loads, in batches, the items of every given sale whose items were not used yet,
+     * instead of one query per sale when they are first used.
+     *
+     * @param sales The sales about to be used together.
+     */
+    public static void prefetchItems(Collection<Sale> sales) {
+        Map<Integer, List<Sale>> pending = new LinkedHashMap<>();
+        for (Sale sale : sales) {
+            if (sale.isItemsLoadPending()) {
+                pending.computeIfAbsent(sale.getId(), id -> new ArrayList<>()).add(sale);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Item>> items = loadItems(new ArrayList<>(pending.keySet()));
+        pending.forEach((saleId, sameSale) -> {
+            for (Sale sale : sameSale) {
+                sale.setLoadedItems(items.getOrDefault(saleId, List.of()));
+            }
+        });
+        LOGGER.debug("Prefetched the items of {} sales", pending.size());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 
     /**
@@ -776,13 +1040,14 @@ public class DatabaseLoader {
      * @return A map of sale IDs to Sale objects.
      */
     public static Map<Integer, Sale> loadAllSales() {
-        if ((instance != null) && !instance.getItemSoldMap().isEmpty()) {
-            return instance.getSalesMap();
+        DataOasis oasis = loadData();
+        if ((oasis != null) && oasis.getItemSoldCount() > 0) {
+            return oasis.getSalesMap();
         }
         Connection conn = ConnFactory.createConnection();
         PreparedStatement ps = null;
         ResultSet rs = null;
-        Map<Integer, Sale> saleMapResult = new HashMap<>();
+        Map<Integer, Sale> saleMapResult = new IntKeyedTable<Sale>().asMap();
 
         String query = """
                 select saleId from Sale;
@@ -801,6 +1066,7 @@ public class DatabaseLoader {
         } finally {
             ConnFactory.closeConnection(rs, ps, conn);
         }
+        prefetchItems(saleMapResult.values());
         LOGGER.debug("Successfully loaded {} sales", saleMapResult.size());
         return saleMapResult;
     }
@@ -815,21 +1081,236 @@ public class DatabaseLoader {
     }
 
     /**
-     * Updates the store map from the sales map.
+     * Loads the Sale objects made within a date window, with one ranged query through the index on
+     * Sale.saleDate, see {@link #loadWindow}. The loaded data is neither used nor changed.
      *
-     * @param storesMap The map of store IDs to Store objects.
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return A map of sale IDs to Sale objects.
      */
-    private static void updateStoreMapFromSalesMap(Map<Integer, Store> storesMap) {
-        if ((instance == null)) {
-            return;
+    public static Map<Integer, Sale> loadSales(LocalDate from, LocalDate to) {
+        return loadWindow(null, from, to, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Loads the Sale objects made at a store within a date window, with one ranged query through the
+     * index on Sale(storeId, saleDate), see {@link #loadWindow}. The loaded data is neither used nor changed.
+     *
+     * @param storeCode The store code of the store.
+     * @param from      The first day of the window, inclusive.
+     * @param to        The last day of the window, inclusive.
+     * @return A map of sale IDs to Sale objects.
+     */
+    public static Map<Integer, Sale> loadSales(String storeCode, LocalDate from, LocalDate to) {
+        return loadWindow(Objects.requireNonNull(storeCode), from, to, new HashMap<>(), new HashMap<>());
+    }
+
+    /**
+     * Loads the Sale objects made within a date window, optionally restricted to one store.
+     * The sales, their stores and their items are read from a single ranged join. The result set is
+     * walked twice: first for the IDs of the people it references, which are read in batches with their
+     * addresses, then to build the sales. Neither the loaded data nor the item catalog is used.
+     *
+     * @param storeCode The store code of the store, or null for every store.
+     * @param from      The first day of the window, inclusive.
+     * @param to        The last day of the window, inclusive.
+     * @param stores    The stores already built, by ID; the other stores of the window are added to it.
+     * @param persons   The people already read, by ID; the other people of the window are added to it.
+     * @return A map of sale IDs to Sale objects.
+     */
+    private static Map<Integer, Sale> loadWindow(String storeCode, LocalDate from, LocalDate to,
+                                                 Map<Integer, Store> stores, Map<Integer, Person> persons) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Empty date window: " + from + " to " + to);
         }
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        Map<Integer, Sale> saleMapResult = new HashMap<>();
+        Map<Integer, Item> catalogItems = new HashMap<>();
 
-        List<Sale> salesList = instance.getSalesList();
+        String query = """
+                select sa.saleId, sa.uniqueCode as saleCode, sa.saleDate, sa.customerId, sa.salesmanId,
+                st.storeId, st.storeCode, st.managerId, st.addressId, street, city, zipcode, state,
+                its.itemSaleId, i.itemId, i.uniqueCode, i.name, i.basePrice, i.type,
+                startDate, endDate, totalGb, totalHours, employeeId, totalPeriod, phoneNumber, isLease, grossPrice, tax
+                from Sale sa
+                join Store st on st.storeId = sa.storeId
+                join Address a on a.addressId = st.addressId
+                left join Zipcode z on a.zipcodeId = z.zipcodeId
+                left join State S on z.stateId = S.stateId
+                left join ItemSale its on its.saleId = sa.saleId
+                left join Item i on i.itemId = its.itemId
+                where sa.saleDate between ? and ?%s
+                order by sa.saleId, its.itemSaleId;
+                """.formatted(storeCode == null ? "" : " and st.storeCode = ?");
+        try {
+            // Buffered and scrollable, so it can be walked again once the people are read
+            ps = conn.prepareStatement(query, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            ps.setDate(1, java.sql.Date.valueOf(from));
+            ps.setDate(2, java.sql.Date.valueOf(to));
+            if (storeCode != null) {
+                ps.setString(3, storeCode);
+            }
+            rs = ps.executeQuery();
 
-        for (Sale sale : salesList) {
-            Store store = sale.getStore();
-            storesMap.get(store.getId()).addSale(sale);
+            Set<Integer> personIds = new HashSet<>();
+            while (rs.next()) {
+                personIds.add(rs.getInt("customerId"));
+                personIds.add(rs.getInt("salesmanId"));
+                personIds.add(rs.getInt("managerId"));
+                int employeeId = rs.getInt("employeeId");
+                if (!rs.wasNull()) {
+                    personIds.add(employeeId);
+                }
+            }
+            personIds.removeAll(persons.keySet());
+            persons.putAll(loadPersons(conn, personIds));
+
+            rs.beforeFirst();
+            while (rs.next()) {
+                int saleId = rs.getInt("saleId");
+                Sale sale = saleMapResult.get(saleId);
+                if (sale == null) {
+                    int storeId = rs.getInt("storeId");
+                    Store store = stores.get(storeId);
+                    if (store == null) {
+                        Address address = readAddress(rs.getInt("addressId"), rs);
+                        store = new Store(storeId, intern(rs.getString("storeCode")), address, persons.get(rs.getInt("managerId")));
+                        stores.put(storeId, store);
+                    }
+                    sale = new Sale(saleId, rs.getString("saleCode"), store,
+                            persons.get(rs.getInt("customerId")), persons.get(rs.getInt("salesmanId")), rs.getString("saleDate"));
+                    saleMapResult.put(saleId, sale);
+                }
+
+                int itemSaleId = rs.getInt("itemSaleId");
+                if (rs.wasNull()) {
+                    continue;
+                }
+                int itemId = rs.getInt("itemId");
+                if (!catalogItems.containsKey(itemId)) {
+                    catalogItems.put(itemId, readItem(itemId, intern(rs.getString("uniqueCode")), rs));
+                }
+                Item catalogItem = catalogItems.get(itemId);
+                Item itemSold = catalogItem == null ? null : readItemSold(itemSaleId, catalogItem, persons::get, rs);
+                if (itemSold != null) {
+                    sale.addItem(itemSold);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error loading sales from {} to {}: ", from, to, e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(rs, ps, conn);
+        }
+        LOGGER.debug("Successfully loaded {} sales from {} to {}", saleMapResult.size(), from, to);
+        return saleMapResult;
+    }
+
+    /**
+     * Reads people and their addresses, with one query per {@link #PREFETCH_BATCH_SIZE} people.
+     *
+     * @param conn      The connection to read them on.
+     * @param personIds The IDs of the people.
+     * @return The people found, by ID.
+     */
+    private static Map<Integer, Person> loadPersons(Connection conn, Collection<Integer> personIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(personIds);
+        Map<Integer, Person> persons = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += PREFETCH_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + PREFETCH_BATCH_SIZE, ids.size()));
+            String query = """
+                    select p.personId, uuid, firstName, lastName, p.addressId, street, city, zipcode, state from Person p
+                    join Address a on a.addressId = p.addressId
+                    left join Zipcode z on a.zipcodeId = z.zipcodeId
+                    left join State S on z.stateId = S.stateId
+                    where p.personId in (%s)
+                    """.formatted(placeholders(batch.size()));
+            try (PreparedStatement ps = conn.prepareStatement(query)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    ps.setInt(i + 1, batch.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int personId = rs.getInt("personId");
+                        persons.put(personId, readPerson(personId, readAddress(rs.getInt("addressId"), rs), rs));
+                    }
+                }
+            }
+        }
+        return persons;
+    }
+
+    /**
+     * Loads all Store objects, each holding only its sales made within a date window.
+     * The stores and their managers are read with one query each, and the sales with
+     * {@link #loadWindow}; the loaded data is neither used nor changed.
+     *
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return A map of store IDs to Store objects.
+     */
+    public static Map<Integer, Store> loadStores(LocalDate from, LocalDate to) {
+        Map<Integer, Person> persons = new HashMap<>();
+        Map<Integer, Store> storeMapResult = loadStoresWithManagers(persons);
+        for (Sale sale : loadWindow(null, from, to, storeMapResult, persons).values()) {
+            sale.getStore().addSale(sale);
         }
+        return storeMapResult;
+    }
+
+    /**
+     * Reads every store without its sales, with its address, and its manager in batches.
+     *
+     * @param persons The people read, by ID; the managers are added to it.
+     * @return A map of store IDs to Store objects.
+     */
+    private static Map<Integer, Store> loadStoresWithManagers(Map<Integer, Person> persons) {
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        Map<Integer, Store> storeMapResult = new HashMap<>();
+
+        String query = """
+                select storeId, storeCode, managerId, st.addressId, street, city, zipcode, state from Store st
+                join Address a on a.addressId = st.addressId
+                left join Zipcode z on a.zipcodeId = z.zipcodeId
+                left join State S on z.stateId = S.stateId;
+                """;
+        try {
+            ps = conn.prepareStatement(query, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            rs = ps.executeQuery();
+            Set<Integer> managerIds = new HashSet<>();
+            while (rs.next()) {
+                managerIds.add(rs.getInt("managerId"));
+            }
+            managerIds.removeAll(persons.keySet());
+            persons.putAll(loadPersons(conn, managerIds));
+
+            rs.beforeFirst();
+            while (rs.next()) {
+                int storeId = rs.getInt("storeId");
+                Address address = readAddress(rs.getInt("addressId"), rs);
+                storeMapResult.put(storeId, new Store(storeId, intern(rs.getString("storeCode")), address, persons.get(rs.getInt("managerId"))));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error loading all stores: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(rs, ps, conn);
+        }
+        return storeMapResult;
+    }
+
+    /**
+     * Updates the store map from the sales map.
+     *
+     * @param oasis     The loaded data.
+     * @param storesMap The map of store IDs to Store objects.
+     */
+    private static void updateStoreMapFromSalesMap(DataOasis oasis, Map<Integer, Store> storesMap) {
+        oasis.forEachSale(sale -> storesMap.get(sale.getStore().getId()).addSale(sale));
         LOGGER.debug("Successfully parsed sales into stores");
     }
 
@@ -865,4 +1346,353 @@ public class DatabaseLoader {
         }
         LOGGER.debug("Successfully filled store {} - storeCode {} with sales", store.getId(), store.getStoreCode());
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams every Address in the database, using the configured fetch size.
+     * The stream holds a connection until it is closed, so use it in a try-with-resources block.
+     *
+     * @return A lazily read stream of Address objects.
+     */
+    public static Stream<Address> streamAllAddress() {
+        return streamAllAddress(fetchSize());
+    }
+
+    /**
+     * Streams every Address in the database.
+     *
+     * @param fetchSize The fetch size of the query, see {@link #DEFAULT_FETCH_SIZE}.
+     * @return A lazily read stream of Address objects.
+     */
+    public static Stream<Address> streamAllAddress(int fetchSize) {
+        String query = """
+                select a.addressId, zipcode, state, city, street from Address a
+                left join Zipcode z on a.zipcodeId = z.zipcodeId
+                left join State S on z.stateId = S.stateId;
+                """;
+        return stream(query, fetchSize, rs -> readAddress(rs.getInt("addressId"), rs));
+    }
+
+    /**
+     * Streams every Person in the database with its address and e-mails, using the configured fetch size.
+     * The stream holds a connection until it is closed, so use it in a try-with-resources block.
+     *
+     * @return A lazily read stream of Person objects.
+     */
+    public static Stream<Person> streamAllPersons() {
+        return streamAllPersons(fetchSize());
+    }
+
+    /**
+     * Streams every Person in the database with its address and e-mails, read from one join
+     * holding a row per e-mail.
+     *
+     * @param fetchSize The fetch size of the query, see {@link #DEFAULT_FETCH_SIZE}.
+     * @return A lazily read stream of Person objects.
+     */
+    public static Stream<Person> streamAllPersons(int fetchSize) {
+        String query = """
+                select p.personId, uuid, firstName, lastName, p.addressId, street, city, zipcode, state, e.address as email
+                from Person p
+                join Address a on a.addressId = p.addressId
+                left join Zipcode z on a.zipcodeId = z.zipcodeId
+                left join State S on z.stateId = S.stateId
+                left join Email e on e.personId = p.personId
+                order by p.personId, e.emailId;
+                """;
+        return stream(query, fetchSize, "personId", rs -> {
+            int personId = rs.getInt("personId");
+            Address address = readAddress(rs.getInt("addressId"), rs);
+            return new Person(personId, rs.getString("uuid"), rs.getString("firstName"), rs.getString("lastName"), address);
+        }, (person, rs) -> {
+            String email = rs.getString("email");
+            if (email != null) {
+                person.addEmail(email);
+            }
+        });
+    }
+
+    /**
+     * Streams every Item sold in the database, using the configured fetch size.
+     * The stream holds a connection until it is closed, so use it in a try-with-resources block.
+     *
+     * @return A lazily read stream of Item objects sold.
+     */
+    public static Stream<Item> streamAllItemSold() {
+        return streamAllItemSold(fetchSize());
+    }
+
+    /**
+     * Streams every Item sold in the database, with its catalog item and the employee of a service read
+     * from the same join. Items sold of an unknown type are skipped.
+     *
+     * @param fetchSize The fetch size of the query, see {@link #DEFAULT_FETCH_SIZE}.
+     * @return A lazily read stream of Item objects sold.
+     */
+    public static Stream<Item> streamAllItemSold(int fetchSize) {
+        String query = """
+                select its.itemSaleId, i.itemId, i.uniqueCode, i.name, i.basePrice, i.type,
+                startDate, endDate, totalGb, totalHours, totalPeriod, phoneNumber, isLease, grossPrice, tax,
+                %s
+                from ItemSale its
+                join Item i on i.itemId = its.itemId
+                %s;
+                """.formatted(personColumns("e", "employee"), personJoin("left join", "e", "its.employeeId"));
+        Map<Integer, Item> catalogItems = new HashMap<>();
+        return stream(query, fetchSize, rs -> readStreamedItemSold(catalogItems, rs));
+    }
+
+    /**
+     * Streams every Sale in the database with its items, using the configured fetch size.
+     * The stream holds a connection until it is closed, so use it in a try-with-resources block.
+     *
+     * @return A lazily read stream of Sale objects.
+     */
+    public static Stream<Sale> streamAllSales() {
+        return streamAllSales(fetchSize());
+    }
+
+    /**
+     * Streams every Sale in the database with its items, read from one join holding a row per item sold.
+     * The customer, the salesman and the employees of the services are read from the same row, and the
+     * stores, with their managers, once before the stream starts. The e-mails of the people are read when
+     * first used, see {@link #prefetchEmails}. The streamed sales are not added to their stores.
+     *
+     * @param fetchSize The fetch size of the query, see {@link #DEFAULT_FETCH_SIZE}.
+     * @return A lazily read stream of Sale objects.
+     */
+    public static Stream<Sale> streamAllSales(int fetchSize) {
+        Map<Integer, Store> stores = loadStoresWithManagers(new HashMap<>());
+        String query = """
+                select sa.saleId, sa.uniqueCode as saleCode, sa.saleDate, sa.storeId,
+                %s,
+                %s,
+                its.itemSaleId, i.itemId, i.uniqueCode, i.name, i.basePrice, i.type,
+                startDate, endDate, totalGb, totalHours, totalPeriod, phoneNumber, isLease, grossPrice, tax,
+                %s
+                from Sale sa
+                %s
+                %s
+                left join ItemSale its on its.saleId = sa.saleId
+                left join Item i on i.itemId = its.itemId
+                %s
+                order by sa.saleId, its.itemSaleId;
+                """.formatted(personColumns("c", "customer"), personColumns("m", "salesman"), personColumns("e", "employee"),
+                personJoin("join", "c", "sa.customerId"), personJoin("join", "m", "sa.salesmanId"),
+                personJoin("left join", "e", "its.employeeId"));
+        Map<Integer, Item> catalogItems = new HashMap<>();
+        return stream(query, fetchSize, "saleId", rs -> {
+            Person customer = readPerson("customer", rs);
+            Person salesman = readPerson("salesman", rs);
+            return new Sale(rs.getInt("saleId"), rs.getString("saleCode"), stores.get(rs.getInt("storeId")),
+                    customer, salesman, rs.getString("saleDate"));
+        }, (sale, rs) -> {
+            rs.getInt("itemSaleId");
+            if (!rs.wasNull()) {
+                Item itemSold = readStreamedItemSold(catalogItems, rs);
+                if (itemSold != null) {
+                    sale.addItem(itemSold);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds an Item sold from the current row of a streamed join holding its catalog item and the
+     * columns of its employee, see {@link #personColumns}.
+     *
+     * @param catalogItems The catalog items built by the stream so far, by ID; shared by its items sold.
+     * @return The item sold, or null if it is of an unknown type.
+     */
+    private static Item readStreamedItemSold(Map<Integer, Item> catalogItems, ResultSet rs) throws SQLException {
+        int itemId = rs.getInt("itemId");
+        if (!catalogItems.containsKey(itemId)) {
+            catalogItems.put(itemId, readItem(itemId, rs.getString("uniqueCode"), rs));
+        }
+        Item catalogItem = catalogItems.get(itemId);
+        if (catalogItem == null) {
+            return null;
+        }
+        Person employee = readPerson("employee", rs);
+        return readItemSold(rs.getInt("itemSaleId"), catalogItem, employeeId -> employee, rs);
+    }
+
+    /**
+     * Select list of a person and its address joined by {@link #personJoin} under the given alias, with
+     * every column labelled with a prefix so several people can be read from one row.
+     *
+     * @param alias  The alias of the Person table.
+     * @param prefix The prefix of the column labels.
+     */
+    private static String personColumns(String alias, String prefix) {
+        return """
+                %1$s.personId as %2$sId, %1$s.uuid as %2$sUuid, %1$s.firstName as %2$sFirstName, %1$s.lastName as %2$sLastName, \
+                %1$s.addressId as %2$sAddressId, %1$sa.street as %2$sStreet, %1$sa.city as %2$sCity, \
+                %1$sz.zipcode as %2$sZipcode, %1$ss.state as %2$sState""".formatted(alias, prefix);
+    }
+
+    /**
+     * Joins a person and its address under the given alias, for the columns of {@link #personColumns}.
+     *
+     * @param join     The join type of the person, <code>join</code> or <code>left join</code>.
+     * @param alias    The alias of the Person table.
+     * @param personId The column holding the ID of the person.
+     */
+    private static String personJoin(String join, String alias, String personId) {
+        return """
+                %1$s Person %2$s on %2$s.personId = %3$s
+                %1$s Address %2$sa on %2$sa.addressId = %2$s.addressId
+                left join Zipcode %2$sz on %2$sz.zipcodeId = %2$sa.zipcodeId
+                left join State %2$ss on %2$ss.stateId = %2$sz.stateId""".formatted(join, alias, personId);
+    }
+
+    /**
+     * Builds a Person from the current row of a result set holding the columns of {@link #personColumns}.
+     * The e-mails are read when first used.
+     *
+     * @param prefix The prefix of the column labels.
+     * @return The person, or null if the row holds none.
+     */
+    private static Person readPerson(String prefix, ResultSet rs) throws SQLException {
+        int personId = rs.getInt(prefix + "Id");
+        if (rs.wasNull()) {
+            return null;
+        }
+        Address address = new Address(rs.getInt(prefix + "AddressId"), rs.getString(prefix + "Street"),
+                rs.getString(prefix + "City"), rs.getString(prefix + "State"), rs.getInt(prefix + "Zipcode"));
+        Person person = new Person(personId, rs.getString(prefix + "Uuid"), rs.getString(prefix + "FirstName"),
+                rs.getString(prefix + "LastName"), address);
+        person.setEmailsLoader(DatabaseLoader::loadEmails);
+        return person;
+    }
+
+    /**
+     * Feeds every Address in the database to an action, one row at a time.
+     *
+     * @param action The action to run on each address.
+     */
+    public static void forEachAddress(Consumer<? super Address> action) {
+        try (Stream<Address> addresses = streamAllAddress()) {
+            addresses.forEach(action);
+        }
+    }
+
+    /**
+     * Feeds every Person in the database to an action, one row at a time.
+     *
+     * @param action The action to run on each person.
+     */
+    public static void forEachPerson(Consumer<? super Person> action) {
+        try (Stream<Person> persons = streamAllPersons()) {
+            persons.forEach(action);
+        }
+    }
+
+    /**
+     * Feeds every Item sold in the database to an action, one row at a time.
+     *
+     * @param action The action to run on each item sold.
+     */
+    public static void forEachItemSold(Consumer<? super Item> action) {
+        try (Stream<Item> items = streamAllItemSold()) {
+            items.forEach(action);
+        }
+    }
+
+    /**
+     * Feeds every Sale in the database to an action, one row at a time.
+     *
+     * @param action The action to run on each sale.
+     */
+    public static void forEachSale(Consumer<? super Sale> action) {
+        try (Stream<Sale> sales = streamAllSales()) {
+            sales.forEach(action);
+        }
+    }
+
+    /**
+     * The fetch size of the streaming loaders, from {@link #FETCH_SIZE_PROPERTY} or {@link #DEFAULT_FETCH_SIZE}.
+     */
+    private static int fetchSize() {
+        return Integer.getInteger(FETCH_SIZE_PROPERTY, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Streams the rows of a query, one element per row; rows mapped to null are skipped.
+     */
+    private static <T> Stream<T> stream(String query, int fetchSize, RowMapper<T> mapper) {
+        return stream(query, fetchSize, null, mapper, (value, rs) -> { });
+    }
+
+    /**
+     * Runs a query on a forward only, read only statement and maps its rows lazily, as the stream is consumed.
+     * Consecutive rows holding the same value in the group column make one element: it is built from the first
+     * of them, then each of them is added to it. Elements built as null are skipped.
+     * Closing the stream closes the result set, the statement and the connection.
+     * <p>
+     * While a MySQL result is streamed its connection cannot run other statements, so the query must join
+     * everything the elements need; the mappers never read the loaded data or run other queries.
+     *
+     * @param group The column grouping the rows, which the query must be ordered by, or null for one element per row.
+     */
+    private static <T> Stream<T> stream(String query, int fetchSize, String group, RowMapper<T> mapper, RowAccumulator<T> accumulator) {
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            LOGGER.error("Error streaming {}: ", query, e);
+            ConnFactory.closeConnection(rs, ps, conn);
+            throw new RuntimeException(e);
+        }
+
+        PreparedStatement statement = ps;
+        ResultSet rows = rs;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean started;
+            private boolean onRow;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!started) {
+                        onRow = rows.next();
+                        started = true;
+                    }
+                    while (onRow) {
+                        long key = group == null ? 0 : rows.getLong(group);
+                        T value = mapper.map(rows);
+                        do {
+                            if (value != null) {
+                                accumulator.add(value, rows);
+                            }
+                            onRow = rows.next();
+                        } while (onRow && group != null && rows.getLong(group) == key);
+                        if (value != null) {
+                            action.accept(value);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (SQLException e) {
+                    LOGGER.error("Error streaming {}: ", query, e);
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> ConnFactory.closeConnection(rows, statement, conn));
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowAccumulator<T> {
+        void add(T value, ResultSet rs) throws SQLException;
+    }
+}
@@ -0,0 +1,250 @@
+package unl.soc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * The IncrementalReporter class produces the same totals reports as {@link DataReporter}, but keeps the
+ * per-sale and per-store rollups of its previous run. Each run only reads the stores and sales that changed
+ * since the last one, and moves just those rows within the sorted reports.
+ * <p>
+ * Changes are found through the <code>updatedAt</code> columns of Store, Sale and ItemSale, set by the database
+ * on every insert and update. A row is stamped when it is written but only visible once its transaction commits,
+ * so each run reads the rows stamped since its previous run started minus {@link #LAG_MILLIS}; rows read twice
+ * are simply applied again. Transactions open longer than the lag when a run starts may be missed.
+ * The changed sales are totaled inside the database with the queries of {@link SqlAggregates}.
+ * <p>
+ * Clearing the database stamps a new generation in the DataGeneration table; a new generation discards the
+ * rollups and rebuilds them from scratch.
+ */
+public class IncrementalReporter {
+    private static final Logger LOGGER = LogManager.getLogger(IncrementalReporter.class);
+
+    /**
+     * How far before its previous run each run looks for changes, to catch the transactions
+     * that committed after that run read its changes.
+     */
+    static final long LAG_MILLIS = 5 * 60 * 1000;
+
+    private static final Comparator<DataReporter.SaleTotals> SALE_ORDER =
+            DataReporter.SALE_TOTALS_ORDER.thenComparingInt(DataReporter.SaleTotals::saleId);
+
+    private static final Comparator<SalesSummary.StoreTotals> STORE_ORDER =
+            DataReporter.STORE_TOTALS_ORDER.thenComparingInt(SalesSummary.StoreTotals::storeId);
+
+    private static final String CHANGED_SALES = """
+            where s.saleId in (select saleId from Sale where updatedAt >= ?
+            union select saleId from ItemSale where updatedAt >= ?)""";
+
+    private final Map<Integer, DataReporter.SaleTotals> sales = new HashMap<>();
+    private final Map<Integer, Integer> saleStoreIds = new HashMap<>();
+    private final NavigableSet<DataReporter.SaleTotals> salesInOrder = new TreeSet<>(SALE_ORDER);
+
+    private final Map<Integer, StoreRollup> stores = new HashMap<>();
+    private final NavigableSet<SalesSummary.StoreTotals> storesInOrder = new TreeSet<>(STORE_ORDER);
+
+    private String generation;
+    private Timestamp lastRun;
+
+    /**
+     * Brings the rollups up to date with the database.
+     *
+     * @return The number of sales read.
+     */
+    public synchronized int refresh() {
+        long begin = System.currentTimeMillis();
+        Connection conn = ConnFactory.createConnection();
+        try {
+            Timestamp now;
+            String currentGeneration;
+            try (PreparedStatement ps = conn.prepareStatement("select now(6), (select max(generation) from DataGeneration)");
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                now = rs.getTimestamp(1);
+                currentGeneration = rs.getString(2);
+            }
+            if (lastRun != null && !Objects.equals(currentGeneration, generation)) {
+                LOGGER.info("Database was cleared since the last report, rebuilding");
+                reset();
+            }
+            Timestamp since = lastRun == null ? null : new Timestamp(lastRun.getTime() - LAG_MILLIS);
+
+            for (StoreRollup store : loadStores(conn, since)) {
+                StoreRollup previous = stores.put(store.storeId, store);
+                if (previous != null) {
+                    storesInOrder.remove(previous.totals());
+                    store.addAll(previous);
+                }
+                storesInOrder.add(store.totals());
+            }
+
+            int changed = loadSales(conn, since);
+
+            generation = currentGeneration;
+            lastRun = now;
+            LOGGER.debug("Refreshed {} sales in {} ms", changed, System.currentTimeMillis() - begin);
+            return changed;
+        } catch (SQLException e) {
+            LOGGER.error("Error refreshing report rollups: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Refreshes the rollups and generates the sales report organized by total sales.
+     *
+     * @return A string equal to {@link DataReporter#reportTotalsBySales()}.
+     */
+    public synchronized String reportTotalsBySales() {
+        refresh();
+        return DataReporter.formatTotalsBySales(salesInOrder);
+    }
+
+    /**
+     * Refreshes the rollups and generates the sales report organized by store.
+     *
+     * @return A string equal to {@link DataReporter#reportTotalsByStore()}.
+     */
+    public synchronized String reportTotalsByStore() {
+        refresh();
+        return DataReporter.formatTotalsByStore(storesInOrder);
+    }
+
+    /**
+     * Discards the rollups, so the next run reads everything again.
+     */
+    public synchronized void reset() {
+        sales.clear();
+        saleStoreIds.clear();
+        salesInOrder.clear();
+        stores.clear();
+        storesInOrder.clear();
+        generation = null;
+        lastRun = null;
+    }
+
+    /**
+     * Replaces the rollup of one sale and moves it, and its stores, to their new places in the reports.
+     */
+    private void apply(DataReporter.SaleTotals totals, int storeId) {
+        DataReporter.SaleTotals previous = sales.put(totals.saleId(), totals);
+        if (previous != null) {
+            salesInOrder.remove(previous);
+        }
+        salesInOrder.add(totals);
+
+        Integer previousStoreId = saleStoreIds.put(totals.saleId(), storeId);
+        if (previous != null) {
+            addToStore(previousStoreId, previous, -1);
+        }
+        addToStore(storeId, totals, 1);
+    }
+
+    private void addToStore(int storeId, DataReporter.SaleTotals totals, int sign) {
+        StoreRollup store = stores.get(storeId);
+        if (store == null) {
+            LOGGER.warn("Sale {} belongs to unknown store {}", totals.saleCode(), storeId);
+            return;
+        }
+        storesInOrder.remove(store.totals());
+        store.add(totals, sign);
+        storesInOrder.add(store.totals());
+    }
+
+    /**
+     * Reads the stores changed since the given time, or every store.
+     */
+    private static List<StoreRollup> loadStores(Connection conn, Timestamp since) throws SQLException {
+        List<StoreRollup> changedStores = new ArrayList<>();
+        String query = """
+                select s.storeId, s.storeCode, p.firstName, p.lastName from Store s
+                left join Person p on p.personId = s.managerId
+                """ + (since == null ? "" : "where s.updatedAt >= ?");
+        try (PreparedStatement ps = conn.prepareStatement(query)) {
+            if (since != null) {
+                ps.setTimestamp(1, since);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    changedStores.add(new StoreRollup(rs.getInt("storeId"), rs.getString("storeCode"),
+                            rs.getString("firstName"), rs.getString("lastName")));
+                }
+            }
+        }
+        return changedStores;
+    }
+
+    /**
+     * Totals and applies the sales that were added, or received new items, since the given time, or every sale.
+     *
+     * @return The number of sales read.
+     */
+    private int loadSales(Connection conn, Timestamp since) throws SQLException {
+        int count = 0;
+        try (PreparedStatement ps = conn.prepareStatement(SqlAggregates.saleTotals(since == null ? "" : CHANGED_SALES))) {
+            if (since != null) {
+                ps.setTimestamp(1, since);
+                ps.setTimestamp(2, since);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    apply(SqlAggregates.readSaleTotals(rs), rs.getInt("storeId"));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Running totals of one store, kept in cents so applying and retracting sales never drifts.
+     */
+    private static final class StoreRollup {
+        private final int storeId;
+        private final String storeCode;
+        private final String managerFirstName;
+        private final String managerLastName;
+        private int saleCount;
+        private int itemCount;
+        private long grossCents;
+        private long taxCents;
+
+        private StoreRollup(int storeId, String storeCode, String managerFirstName, String managerLastName) {
+            this.storeId = storeId;
+            this.storeCode = storeCode;
+            this.managerFirstName = managerFirstName;
+            this.managerLastName = managerLastName;
+        }
+
+        private void add(DataReporter.SaleTotals totals, int sign) {
+            saleCount += sign;
+            itemCount += sign * totals.itemCount();
+            grossCents += sign * Math.round((totals.netPrice() - totals.tax()) * 100);
+            taxCents += sign * Math.round(totals.tax() * 100);
+        }
+
+        /**
+         * Takes over the running totals of the previous rollup of this store.
+         */
+        private void addAll(StoreRollup previous) {
+            saleCount += previous.saleCount;
+            itemCount += previous.itemCount;
+            grossCents += previous.grossCents;
+            taxCents += previous.taxCents;
+        }
+
+        private SalesSummary.StoreTotals totals() {
+            return new SalesSummary.StoreTotals(storeId, storeCode, managerFirstName, managerLastName,
+                    saleCount, itemCount, grossCents / 100.0, taxCents / 100.0);
+        }
+    }
+}
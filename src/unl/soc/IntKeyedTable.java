@@ -0,0 +1,239 @@
+package unl.soc;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The IntKeyedTable class stores entities by their integer id in a plain array indexed by the id.
+ * Database ids are dense auto-increment values, so the array is nearly full: there is no boxing of keys,
+ * no entry object per value and no hashing, only one reference slot per id.
+ * <p>
+ * {@link #asMap()} exposes the table as a <code>Map&lt;Integer, V&gt;</code> for callers written against maps.
+ * Ids must not be negative. Null values are not stored. The table is not thread safe.
+ *
+ * @param <V> The type of the entities.
+ */
+public final class IntKeyedTable<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Largest array the table grows to, as in the JDK collections.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private Object[] values;
+    private int size;
+    private Map<Integer, V> mapView;
+
+    public IntKeyedTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param capacity The largest id expected plus one.
+     */
+    public IntKeyedTable(int capacity) {
+        this.values = new Object[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Returns the table behind a map created by {@link #asMap()}, or copies any other map into a new table.
+     *
+     * @param map The map to convert.
+     * @return A table holding the entries of the map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> IntKeyedTable<V> of(Map<Integer, ? extends V> map) {
+        if (map instanceof IntKeyedTable<?>.MapView view) {
+            return (IntKeyedTable<V>) view.table();
+        }
+        int capacity = 0;
+        for (Integer key : map.keySet()) {
+            capacity = Math.max(capacity, key + 1);
+        }
+        IntKeyedTable<V> table = new IntKeyedTable<>(capacity);
+        map.forEach(table::put);
+        return table;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int id) {
+        return id >= 0 && id < values.length ? (V) values[id] : null;
+    }
+
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Stores a value under an id, growing the array when the id is beyond its end.
+     *
+     * @return The previous value, or null.
+     * @throws IllegalArgumentException if the id is negative.
+     * @throws NullPointerException     if the value is null.
+     */
+    public V put(int id, V value) {
+        Objects.requireNonNull(value);
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id: " + id);
+        }
+        if (id >= values.length) {
+            long capacity = Math.max(id + 1L, values.length + (values.length >> 1));
+            values = Arrays.copyOf(values, (int) Math.min(capacity, MAX_CAPACITY));
+        }
+        V previous = get(id);
+        values[id] = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    public V remove(int id) {
+        V previous = get(id);
+        if (previous != null) {
+            values[id] = null;
+            size--;
+        }
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Visits every value in id order.
+     *
+     * @param action The action to run on each value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Collects the values in id order.
+     *
+     * @return A new list of the values.
+     */
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEachValue(list::add);
+        return list;
+    }
+
+    /**
+     * A live map view of this table. Changes through the view write through to the table.
+     *
+     * @return The map view.
+     */
+    public Map<Integer, V> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    private final class MapView extends AbstractMap<Integer, V> {
+
+        IntKeyedTable<V> table() {
+            return IntKeyedTable.this;
+        }
+
+        @Override
+        public V get(Object key) {
+            return key instanceof Integer id ? IntKeyedTable.this.get(id) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public V put(Integer key, V value) {
+            return IntKeyedTable.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return key instanceof Integer id ? IntKeyedTable.this.remove(id) : null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            IntKeyedTable.this.clear();
+        }
+
+        @Override
+        public Set<Entry<Integer, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, V>> iterator() {
+                    return new Iterator<>() {
+                        private int next = advance(0);
+                        private int last = -1;
+
+                        private int advance(int from) {
+                            while (from < values.length && values[from] == null) {
+                                from++;
+                            }
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < values.length;
+                        }
+
+                        @Override
+                        public Entry<Integer, V> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            last = next;
+                            next = advance(next + 1);
+                            return new SimpleImmutableEntry<>(last, IntKeyedTable.this.get(last));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last < 0) {
+                                throw new IllegalStateException();
+                            }
+                            IntKeyedTable.this.remove(last);
+                            last = -1;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package unl.soc;
+
+import java.time.format.DateTimeParseException;
+
+/**
+ * The IsoDates class parses fixed-width yyyy-MM-dd dates, as found in the CSV files and returned for DATE
+ * columns, straight into epoch days. Dates are then kept as a packed int instead of a LocalDate, and the
+ * general DateTimeFormatter machinery of LocalDate.parse is never involved.
+ * <p>
+ * The calendar arithmetic is the proleptic ISO calendar of java.time, so the results are those of
+ * LocalDate.toEpochDay and Period.between.
+ */
+public final class IsoDates {
+
+    /**
+     * Epoch day meaning "no date", for the catalog items that are not sold on any date.
+     */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    /**
+     * Days from 0000-03-01 to 1970-01-01, the shift between the civil day count and the epoch day.
+     */
+    private static final int DAYS_0000_03_01_TO_1970 = 719468;
+
+    private IsoDates() {
+    }
+
+    /**
+     * Parses a yyyy-MM-dd date.
+     *
+     * @param text The date.
+     * @return The epoch day of the date, as LocalDate.toEpochDay.
+     * @throws DateTimeParseException if the text is not a valid yyyy-MM-dd date.
+     */
+    public static int parseEpochDay(CharSequence text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            throw new DateTimeParseException("Text '" + text + "' is not a yyyy-MM-dd date", text, 0);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new DateTimeParseException("Text '" + text + "' is not a valid date", text, 0);
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Counts the whole months between two dates, as years * 12 + months of Period.between.
+     *
+     * @param startEpochDay The first date, inclusive.
+     * @param endEpochDay   The last date, exclusive.
+     * @return The number of whole months, negative when the end is before the start.
+     */
+    public static int monthsBetween(int startEpochDay, int endEpochDay) {
+        int start = toYearMonthDay(startEpochDay);
+        int end = toYearMonthDay(endEpochDay);
+        int months = (end / 100) / 100 * 12 + (end / 100) % 100 - ((start / 100) / 100 * 12 + (start / 100) % 100);
+        int days = end % 100 - start % 100;
+        if (months > 0 && days < 0) {
+            months--;
+        } else if (months < 0 && days > 0) {
+            months++;
+        }
+        return months;
+    }
+
+    /**
+     * Converts an epoch day back to its year, month and day, packed as the decimal number yyyyMMdd.
+     */
+    static int toYearMonthDay(int epochDay) {
+        // Days since 0000-03-01, counted in 400 year eras, so leap days fall at the end of each year
+        long days = (long) epochDay + DAYS_0000_03_01_TO_1970;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 10000 + month * 100 + day);
+    }
+
+    private static int epochDay(int year, int month, int day) {
+        // Same arithmetic as LocalDate.toEpochDay, for years 0 to 9999
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return (int) (total - (DAYS_0000_03_01_TO_1970 + 60));
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int digits(CharSequence text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DateTimeParseException("Text '" + text + "' is not a yyyy-MM-dd date", text, i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
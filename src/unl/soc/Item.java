@@ -5,24 +5,43 @@ import com.google.gson.annotations.Expose;
 /**
  * The Item class is an abstract class representing an item.
  * It includes fields for unique code, name, tax, total price, and stores available.
+ * An item sold in a sale references its shared catalog item and keeps its own per-sale fields;
+ * it holds the catalog code and name strings too, so they are serialized with it.
  * It includes Getters, ToString, HashCode and Equals methods
  */
 public abstract class Item implements Priceable {
-    private int id;
+    private final int id;
     @Expose
-    private String uniqueCode;
+    private final String uniqueCode;
     @Expose
-    private String name;
+    private final String name;
+    private final transient Item catalogItem;
+    private transient boolean pricesStored;
+    private transient double storedGrossPrice;
+    private transient double storedTotalTax;
 
     public Item(String uniqueCode, String name) {
-        this.uniqueCode = uniqueCode;
-        this.name = name;
+        this(0, uniqueCode, name);
     }
 
     public Item(int id, String uniqueCode, String name) {
         this.id = id;
         this.uniqueCode = uniqueCode;
         this.name = name;
+        this.catalogItem = null;
+    }
+
+    /**
+     * Creates an item sold that shares the code and name of the given catalog item.
+     *
+     * @param id          The id of the item sold.
+     * @param catalogItem The catalog item being sold.
+     */
+    protected Item(int id, Item catalogItem) {
+        this.id = id;
+        this.catalogItem = catalogItem.getCatalogItem();
+        this.uniqueCode = this.catalogItem.uniqueCode;
+        this.name = this.catalogItem.name;
     }
 
     public int getId() {
@@ -31,6 +50,79 @@ public abstract class Item implements Priceable {
 
     public abstract double getBasePrice();
 
+    /**
+     * Gets the gross price of the item, as stored with the item sold when it was written,
+     * or computed from the pricing rules of the concrete class.
+     *
+     * @return The gross price.
+     */
+    @Override
+    public final double getGrossPrice() {
+        return pricesStored ? storedGrossPrice : computeGrossPrice();
+    }
+
+    /**
+     * Gets the total tax of the item, as stored with the item sold when it was written,
+     * or computed from the pricing rules of the concrete class.
+     *
+     * @return The total tax.
+     */
+    @Override
+    public final double getTotalTax() {
+        return pricesStored ? storedTotalTax : computeTotalTax();
+    }
+
+    /**
+     * Computes the gross price from the pricing rules of the concrete class.
+     *
+     * @return The gross price.
+     */
+    protected abstract double computeGrossPrice();
+
+    /**
+     * Computes the total tax from the pricing rules of the concrete class.
+     *
+     * @return The total tax.
+     */
+    protected abstract double computeTotalTax();
+
+    /**
+     * Sets the prices stored with this item sold, so they are read instead of computed.
+     *
+     * @param grossPrice The stored gross price.
+     * @param totalTax   The stored total tax.
+     */
+    void setStoredPrices(double grossPrice, double totalTax) {
+        this.storedGrossPrice = grossPrice;
+        this.storedTotalTax = totalTax;
+        this.pricesStored = true;
+    }
+
+    /**
+     * Tells whether this item sold reads its prices as stored when it was written.
+     *
+     * @return true if stored prices were set.
+     */
+    boolean hasStoredPrices() {
+        return pricesStored;
+    }
+
+    /**
+     * Gets the kind of this item.
+     *
+     * @return The ItemType constant of the concrete class.
+     */
+    public abstract ItemType getType();
+
+    /**
+     * Gets the shared catalog item this item was sold from.
+     *
+     * @return The catalog item, or this item when it is itself a catalog item.
+     */
+    public Item getCatalogItem() {
+        return catalogItem == null ? this : catalogItem;
+    }
+
     public String getUniqueCode() {
         return uniqueCode;
     }
@@ -44,16 +136,26 @@ public abstract class Item implements Priceable {
     }
 
     public String toString() {
-        String item = String.format("Item{" +
-                "\n  Unique identifier: " + uniqueCode +
-                "\n  Name: " + name +
+        return "Item{" +
+                "\n  Unique identifier: " + getUniqueCode() +
+                "\n  Name: " + getName() +
                 "\n  Total tax: $" + getTotalTax() +
-                "\n  Total price: $" + getNetPrice());
-        return item + "\n}";
+                "\n  Total price: $" + getNetPrice() +
+                "\n}";
+    }
+
+    /**
+     * Appends the report line of this item, as printed by toString, to a report being rendered.
+     * Items sold override it to write their line through a compiled layout.
+     *
+     * @param out The report.
+     */
+    void appendTo(ReportFormatter out) {
+        out.append(toString());
     }
 
 //    @Override
 //    public int hashCode() {
 //        return Objects.hash(uniqueCode, name, getTotalTax(), getNetPrice());
 //    }
-}
\ No newline at end of file
+}
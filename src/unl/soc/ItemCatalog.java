@@ -0,0 +1,37 @@
+package unl.soc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ItemCatalog class caches the catalog items read by {@link DatabaseLoader} by item ID,
+ * so every item sold that references one shares the same instance.
+ * It is kept out of DatabaseLoader so it can be invalidated without loading {@link DataOasis}:
+ * whatever clears, drops or rebuilds the Item table must call {@link #invalidate()}.
+ */
+public final class ItemCatalog {
+
+    private static final Map<Integer, Item> ITEMS = new ConcurrentHashMap<>();
+
+    private ItemCatalog() {
+    }
+
+    static Item get(int itemId) {
+        return ITEMS.get(itemId);
+    }
+
+    static void put(Item item) {
+        ITEMS.put(item.getId(), item);
+    }
+
+    static void putIfAbsent(Item item) {
+        ITEMS.putIfAbsent(item.getId(), item);
+    }
+
+    /**
+     * Drops every cached catalog item.
+     */
+    public static void invalidate() {
+        ITEMS.clear();
+    }
+}
@@ -0,0 +1,94 @@
+package unl.soc;
+
+/**
+ * The ItemType enum identifies the concrete kind of an Item.
+ * Each constant carries the one letter code used in the CSV files and in the database,
+ * and codes are decoded through a dense lookup table instead of string comparisons.
+ * Catalog item types also carry the name the SalesData API accepts for them.
+ */
+public enum ItemType {
+    PRODUCT('P', "Product"),
+    LEASE('L', null),
+    SERVICE('S', "Service"),
+    DATA('D', "Data"),
+    VOICE('V', "Voice");
+
+    private static final ItemType[] BY_CODE = new ItemType[128];
+
+    static {
+        for (ItemType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final char code;
+    private final String typeName;
+
+    ItemType(char code, String typeName) {
+        this.code = code;
+        this.typeName = typeName;
+    }
+
+    public char getCode() {
+        return code;
+    }
+
+    /**
+     * Decodes a one letter type code.
+     *
+     * @param code The type code.
+     * @return The matching ItemType.
+     * @throws IllegalArgumentException if the code is unknown.
+     */
+    public static ItemType fromCode(char code) {
+        ItemType type = code < BY_CODE.length ? BY_CODE[code] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unexpected item type: " + code);
+        }
+        return type;
+    }
+
+    /**
+     * Decodes a one letter type code held in a String, as read from a CSV file or a result set.
+     *
+     * @param code The type code.
+     * @return The matching ItemType.
+     * @throws IllegalArgumentException if the code is unknown.
+     */
+    public static ItemType fromCode(String code) {
+        ItemType type = lookup(code);
+        if (type == null) {
+            throw new IllegalArgumentException("Unexpected item type: " + code);
+        }
+        return type;
+    }
+
+    /**
+     * Decodes the name of a catalog item type, as passed to the SalesData API.
+     * Leases are sold from product catalog items, so they have no name.
+     *
+     * @param typeName <code>"Product"</code>, <code>"Service"</code>, <code>"Data"</code> or <code>"Voice"</code>.
+     * @return The matching ItemType, or null if the name is unknown.
+     */
+    public static ItemType fromName(String typeName) {
+        for (ItemType type : values()) {
+            if (type.typeName != null && type.typeName.equals(typeName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a one letter type code held in a String, for readers that skip the records of unknown types.
+     *
+     * @param code The type code.
+     * @return The matching ItemType, or null if the code is unknown.
+     */
+    public static ItemType lookup(String code) {
+        if (code == null || code.length() != 1 || code.charAt(0) >= BY_CODE.length) {
+            return null;
+        }
+        return BY_CODE[code.charAt(0)];
+    }
+}
@@ -0,0 +1,110 @@
+package unl.soc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The LinePrices class writes the gross price, tax and net price of each item sold to the grossPrice,
+ * tax and netPrice columns of ItemSale. Writers compute them once, when the row is inserted, and
+ * {@link DatabaseLoader} hands them to the loaded items, so readers no longer run the pricing rules.
+ * <p>
+ * Rows written before the columns existed are filled in by {@link #backfill()}.
+ */
+public class LinePrices {
+    private static final Logger LOGGER = LogManager.getLogger(LinePrices.class);
+
+    /**
+     * The ItemSale columns holding the stored prices, in the order {@link #bind} sets them.
+     */
+    public static final String COLUMNS = "grossPrice, tax, netPrice";
+
+    /**
+     * Number of rows priced per round trip of the backfill.
+     */
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    /**
+     * Sets the gross price, tax and net price of a line item as three consecutive parameters.
+     *
+     * @param ps         The prepared insert.
+     * @param firstIndex The index of the gross price parameter.
+     * @param lineItem   The line item, priced by its own rules.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    public static void bind(PreparedStatement ps, int firstIndex, Priceable lineItem) throws SQLException {
+        long grossCents = Math.round(lineItem.getGrossPrice() * 100);
+        long taxCents = Math.round(lineItem.getTotalTax() * 100);
+        ps.setBigDecimal(firstIndex, BigDecimal.valueOf(grossCents, 2));
+        ps.setBigDecimal(firstIndex + 1, BigDecimal.valueOf(taxCents, 2));
+        ps.setBigDecimal(firstIndex + 2, BigDecimal.valueOf(grossCents + taxCents, 2));
+    }
+
+    /**
+     * Stores the prices of every ItemSale row that has none yet.
+     *
+     * @return The number of rows priced.
+     */
+    public static int backfill() {
+        Connection conn = ConnFactory.createConnection();
+        try {
+            return backfill(conn);
+        } catch (SQLException e) {
+            LOGGER.error("Error backfilling line prices: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Stores the prices of every ItemSale row that has none yet, on the given connection.
+     * Rows are priced by the SQL pricing rules of {@link SqlAggregates}, in batches walking up the item sale IDs,
+     * so the job can be interrupted and run again.
+     *
+     * @param conn The connection to write on.
+     * @return The number of rows priced.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    static int backfill(Connection conn) throws SQLException {
+        String select = SqlAggregates.linePrices("""
+                where its.grossPrice is null and its.itemSaleId > ?
+                order by its.itemSaleId limit ?""");
+        String update = "update ItemSale set grossPrice = ?, tax = ?, netPrice = ? where itemSaleId = ?";
+        int priced = 0;
+        int lastId = 0;
+        try (PreparedStatement query = conn.prepareStatement(select);
+             PreparedStatement ps = conn.prepareStatement(update)) {
+            while (true) {
+                query.setInt(1, lastId);
+                query.setInt(2, BACKFILL_BATCH_SIZE);
+                int rows = 0;
+                try (ResultSet rs = query.executeQuery()) {
+                    while (rs.next()) {
+                        long grossCents = rs.getLong("grossCents");
+                        long taxCents = rs.getLong("taxCents");
+                        lastId = Math.max(lastId, rs.getInt("itemSaleId"));
+                        ps.setBigDecimal(1, BigDecimal.valueOf(grossCents, 2));
+                        ps.setBigDecimal(2, BigDecimal.valueOf(taxCents, 2));
+                        ps.setBigDecimal(3, BigDecimal.valueOf(grossCents + taxCents, 2));
+                        ps.setInt(4, rs.getInt("itemSaleId"));
+                        ps.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                ps.executeBatch();
+                priced += rows;
+            }
+        }
+        LOGGER.debug("Backfilled the prices of {} item sales", priced);
+        return priced;
+    }
+}
@@ -0,0 +1,428 @@
+package unl.soc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The OffHeapLineItems class stores line items (items sold) outside the Java heap, as fixed-width records
+ * in a direct buffer. Only the catalog items and one buffer per table live on the heap, so heap usage and
+ * GC time do not grow with the number of line items.
+ * <p>
+ * Each record holds the item type, the index of its catalog item, the per-sale quantities, the index of
+ * the serving employee, the phone number as fixed ASCII and the gross price and tax precomputed in cents.
+ * Catalog items and employees are shared, so their side tables grow with the catalog and the staff,
+ * not with the line items. Records are read back through {@link View} flyweights implementing
+ * {@link Priceable}, or turned back into regular {@link Item} objects with {@link View#toItem()}.
+ * <p>
+ * Appending is not thread safe; once built, the records may be read from several threads.
+ */
+public final class OffHeapLineItems {
+
+    private static final int TYPE = 0;
+    private static final int ITEM_SALE_ID = 4;
+    private static final int CATALOG_INDEX = 8;
+    private static final int EMPLOYEE = 12;
+    private static final int QUANTITY = 16;
+    private static final int LEASE_START = 24;
+    private static final int LEASE_END = 28;
+    private static final int LEASE_MONTHS = 32;
+    private static final int PHONE = 36;
+    private static final int GROSS_CENTS = 56;
+    private static final int TAX_CENTS = 64;
+
+    /**
+     * Width of the fixed ASCII phone number field, zero padded.
+     */
+    public static final int PHONE_LENGTH = 16;
+
+    /**
+     * Width of one record in bytes.
+     */
+    public static final int RECORD_SIZE = 72;
+
+    /**
+     * Maximum number of records, the most whose offsets fit in a single buffer.
+     */
+    public static final int MAX_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private static final ItemType[] TYPES = ItemType.values();
+
+    private final List<Item> catalog = new ArrayList<>();
+    private final Map<Item, Integer> catalogIndex = new IdentityHashMap<>();
+    private final List<Person> employees = new ArrayList<>();
+    private final Map<Person, Integer> employeeIndex = new IdentityHashMap<>();
+
+    private ByteBuffer records;
+    private ByteBuffer idIndex;
+    private int size;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param capacity The number of records to allocate room for.
+     * @throws IllegalArgumentException if the capacity is over {@link #MAX_RECORDS}.
+     */
+    public OffHeapLineItems(int capacity) {
+        if (capacity > MAX_RECORDS) {
+            throw new IllegalArgumentException("Cannot store " + capacity + " line items off-heap, the limit is " + MAX_RECORDS);
+        }
+        this.records = allocate(offset(Math.max(capacity, 16)));
+        this.idIndex = allocate(Math.max(capacity, 16) * Integer.BYTES);
+    }
+
+    /**
+     * Appends a line item as a new record.
+     *
+     * @param item The item sold.
+     * @return The index of the new record.
+     * @throws IllegalArgumentException if the item is a catalog item or its phone number does not fit.
+     * @throws IllegalStateException    if {@link #MAX_RECORDS} records are already stored.
+     */
+    public int append(Item item) {
+        Item catalogItem = item.getCatalogItem();
+        if (catalogItem == item) {
+            throw new IllegalArgumentException("Not an item sold: " + item.getUniqueCode());
+        }
+        if (size == MAX_RECORDS) {
+            throw new IllegalStateException("Cannot store more than " + MAX_RECORDS + " line items off-heap");
+        }
+        int base = offset(size);
+        if (base == records.capacity()) {
+            records = grow(records, (int) Math.min(records.capacity() * 2L, offset(MAX_RECORDS)));
+        }
+        int index = size++;
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            records.putLong(base + i, 0);
+        }
+
+        records.put(base + TYPE, (byte) item.getType().ordinal());
+        records.putInt(base + ITEM_SALE_ID, item.getId());
+        records.putInt(base + CATALOG_INDEX, indexOf(catalog, catalogIndex, catalogItem));
+        records.putLong(base + GROSS_CENTS, Math.round(item.getGrossPrice() * 100));
+        records.putLong(base + TAX_CENTS, Math.round(item.getTotalTax() * 100));
+
+        switch (item.getType()) {
+            case LEASE -> {
+                ProductLease lease = (ProductLease) item;
+                records.putInt(base + LEASE_START, lease.getStartEpochDay());
+                records.putInt(base + LEASE_END, lease.getEndEpochDay());
+                records.putInt(base + LEASE_MONTHS, lease.getPeriodInMonths());
+            }
+            case SERVICE -> {
+                Service service = (Service) item;
+                records.putDouble(base + QUANTITY, service.getTotalHours());
+                records.putInt(base + EMPLOYEE, service.getEmployee() == null ? 0 : indexOf(employees, employeeIndex, service.getEmployee()) + 1);
+            }
+            case DATA -> records.putDouble(base + QUANTITY, ((DataPlan) item).getTotalGB());
+            case VOICE -> {
+                VoicePlan voicePlan = (VoicePlan) item;
+                records.putDouble(base + QUANTITY, voicePlan.getTotalPeriod());
+                putPhone(base, voicePlan.getPhoneNumber());
+            }
+            default -> {
+            }
+        }
+
+        if (item.getId() > 0) {
+            indexId(item.getId(), index);
+        }
+        return index;
+    }
+
+    /**
+     * Number of records stored.
+     *
+     * @return the record count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Off-heap bytes held by the records and the id index.
+     *
+     * @return the allocated capacity in bytes.
+     */
+    public long offHeapBytes() {
+        return (long) records.capacity() + idIndex.capacity();
+    }
+
+    /**
+     * Finds the record of an item sold by its id.
+     *
+     * @param itemSaleId The id of the item sold.
+     * @return The index of the record, or -1 if there is none.
+     */
+    public int indexOf(int itemSaleId) {
+        long slot = (long) itemSaleId * Integer.BYTES;
+        if (itemSaleId <= 0 || slot >= idIndex.capacity()) {
+            return -1;
+        }
+        return idIndex.getInt((int) slot) - 1;
+    }
+
+    /**
+     * Creates a view positioned on a record.
+     *
+     * @param index The index of the record.
+     * @return A new view of the record.
+     */
+    public View view(int index) {
+        return new View().moveTo(index);
+    }
+
+    /**
+     * Visits a range of records through a single reused view, without allocating per record.
+     * The view must not be kept after the visitor returns.
+     *
+     * @param from    The index of the first record.
+     * @param count   The number of records.
+     * @param visitor The visitor.
+     */
+    public void forEach(int from, int count, Consumer<? super View> visitor) {
+        View view = new View();
+        for (int i = from; i < from + count; i++) {
+            visitor.accept(view.moveTo(i));
+        }
+    }
+
+    /**
+     * Sums the gross price of a range of records, in cents.
+     */
+    public long grossCents(int from, int count) {
+        Objects.checkFromIndexSize(from, count, size);
+        long total = 0;
+        for (int i = from; i < from + count; i++) {
+            total += records.getLong(offset(i) + GROSS_CENTS);
+        }
+        return total;
+    }
+
+    /**
+     * Sums the tax of a range of records, in cents.
+     */
+    public long taxCents(int from, int count) {
+        Objects.checkFromIndexSize(from, count, size);
+        long total = 0;
+        for (int i = from; i < from + count; i++) {
+            total += records.getLong(offset(i) + TAX_CENTS);
+        }
+        return total;
+    }
+
+    /**
+     * Turns a range of records back into regular items.
+     *
+     * @param from  The index of the first record.
+     * @param count The number of records.
+     * @return A new list of items.
+     */
+    public List<Item> toItems(int from, int count) {
+        List<Item> items = new ArrayList<>(count);
+        forEach(from, count, view -> items.add(view.toItem()));
+        return items;
+    }
+
+    /**
+     * Read only map of items sold by id, materializing each item when it is read.
+     *
+     * @return A map view of the records with a positive id.
+     */
+    public Map<Integer, Item> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public Item get(Object key) {
+                int index = key instanceof Integer id ? indexOf(id) : -1;
+                return index < 0 ? null : view(index).toItem();
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof Integer id && indexOf(id) >= 0;
+            }
+
+            @Override
+            public Set<Entry<Integer, Item>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<Integer, Item>> iterator() {
+                        return new Iterator<>() {
+                            private int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < size;
+                            }
+
+                            @Override
+                            public Entry<Integer, Item> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                Item item = view(next++).toItem();
+                                return new SimpleImmutableEntry<>(item.getId(), item);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Index of a shared object in its side table, adding it on first use.
+     */
+    private static <T> int indexOf(List<T> table, Map<T, Integer> index, T value) {
+        return index.computeIfAbsent(value, v -> {
+            table.add(v);
+            return table.size() - 1;
+        });
+    }
+
+    private void putPhone(int base, String phoneNumber) {
+        if (phoneNumber == null) {
+            return;
+        }
+        byte[] bytes = phoneNumber.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > PHONE_LENGTH || !StandardCharsets.US_ASCII.newEncoder().canEncode(phoneNumber)) {
+            throw new IllegalArgumentException("Phone number does not fit a record: " + phoneNumber);
+        }
+        records.put(base + PHONE, bytes);
+    }
+
+    private void indexId(int itemSaleId, int index) {
+        long slot = (long) itemSaleId * Integer.BYTES;
+        if (slot >= idIndex.capacity()) {
+            long capacity = Math.max(slot + Integer.BYTES, idIndex.capacity() * 2L);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Item sale id too large: " + itemSaleId);
+            }
+            idIndex = grow(idIndex, (int) capacity);
+        }
+        idIndex.putInt((int) slot, index + 1);
+    }
+
+    /**
+     * Offset of a record. It cannot overflow: there are at most {@link #MAX_RECORDS} records.
+     */
+    private static int offset(int index) {
+        return index * RECORD_SIZE;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int bytes) {
+        ByteBuffer grown = allocate(bytes);
+        grown.put(buffer.duplicate().clear());
+        return grown.clear();
+    }
+
+    /**
+     * A flyweight over one record. A view can be moved from record to record, so iterating over
+     * many records does not allocate.
+     */
+    public final class View implements Priceable {
+        private int base;
+
+        private View() {
+        }
+
+        private View moveTo(int index) {
+            Objects.checkIndex(index, size);
+            this.base = offset(index);
+            return this;
+        }
+
+        public ItemType getType() {
+            return TYPES[records.get(base + TYPE)];
+        }
+
+        public int getItemSaleId() {
+            return records.getInt(base + ITEM_SALE_ID);
+        }
+
+        public Item getCatalogItem() {
+            return catalog.get(records.getInt(base + CATALOG_INDEX));
+        }
+
+        /**
+         * The billed hours of a service, the gigabytes of a data plan or the days of a voice plan.
+         */
+        public double getQuantity() {
+            return records.getDouble(base + QUANTITY);
+        }
+
+        public int getLeaseMonths() {
+            return records.getInt(base + LEASE_MONTHS);
+        }
+
+        /**
+         * The employee who served a service, or null.
+         */
+        public Person getEmployee() {
+            int employee = records.getInt(base + EMPLOYEE);
+            return employee == 0 ? null : employees.get(employee - 1);
+        }
+
+        public String getPhoneNumber() {
+            int length = 0;
+            while (length < PHONE_LENGTH && records.get(base + PHONE + length) != 0) {
+                length++;
+            }
+            if (length == 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            records.get(base + PHONE, bytes);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        public long getGrossCents() {
+            return records.getLong(base + GROSS_CENTS);
+        }
+
+        public long getTaxCents() {
+            return records.getLong(base + TAX_CENTS);
+        }
+
+        @Override
+        public double getGrossPrice() {
+            return getGrossCents() / 100.0;
+        }
+
+        @Override
+        public double getTotalTax() {
+            return getTaxCents() / 100.0;
+        }
+
+        /**
+         * Materializes the record as a regular item sold.
+         *
+         * @return A new Item equal to the one appended.
+         */
+        public Item toItem() {
+            Item catalogItem = getCatalogItem();
+            int id = getItemSaleId();
+            Item item = switch (getType()) {
+                case PRODUCT -> new ProductPurchase(id, catalogItem);
+                case LEASE -> new ProductLease(id, catalogItem,
+                        records.getInt(base + LEASE_START), records.getInt(base + LEASE_END));
+                case SERVICE -> new Service(id, catalogItem, getQuantity(), getEmployee());
+                case DATA -> new DataPlan(id, catalogItem, getQuantity());
+                case VOICE -> new VoicePlan(id, catalogItem, getPhoneNumber(), getQuantity());
+            };
+            item.setStoredPrices(getGrossPrice(), getTotalTax());
+            return item;
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.google.gson.annotations.Expose;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 /**
  * The Person class represents a person.
@@ -17,6 +19,7 @@ import java.util.Objects;
 public class Person {
     @XStreamAlias("emails")
     private final List<String> emailList;
+    private transient volatile Function<Person, List<String>> emailsLoader;
     private int id;
     @Expose
     private String uuid;
@@ -73,14 +76,67 @@ public class Person {
         return address;
     }
 
+    /**
+     * Gets the e-mails of the person as a read only view, not a copy.
+     *
+     * @return The e-mails of the person.
+     */
     public List<String> getEmailList() {
-        return new ArrayList<>(emailList);
+        loadEmails();
+        return Collections.unmodifiableList(emailList);
     }
 
     public void addEmail(String emailAddress) {
+        loadEmails();
         this.emailList.add(emailAddress);
     }
 
+    /**
+     * Defers loading the e-mails of this person until they are first used.
+     *
+     * @param loader Loads the e-mails of a person; called at most once.
+     */
+    void setEmailsLoader(Function<Person, List<String>> loader) {
+        this.emailsLoader = loader;
+    }
+
+    /**
+     * Tells whether the e-mails of this person are still waiting to be loaded.
+     *
+     * @return true if a loader is pending.
+     */
+    boolean isEmailsLoadPending() {
+        return emailsLoader != null;
+    }
+
+    /**
+     * Hands this person e-mails loaded along with the e-mails of other persons, in place of its pending loader.
+     * Does nothing if the e-mails were loaded in the meantime.
+     *
+     * @param emails The e-mails of this person.
+     */
+    synchronized void setLoadedEmails(List<String> emails) {
+        if (emailsLoader != null) {
+            this.emailList.addAll(emails);
+            this.emailsLoader = null;
+        }
+    }
+
+    /**
+     * Runs the pending e-mails loader, if any.
+     */
+    private void loadEmails() {
+        if (emailsLoader != null) {
+            synchronized (this) {
+                Function<Person, List<String>> loader = emailsLoader;
+                if (loader != null) {
+                    this.emailList.addAll(loader.apply(this));
+                    this.emailsLoader = null;
+                }
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return getLastName() + ", " + getFirstName() + " (" + getUuid() + ")\n" +
@@ -89,16 +145,20 @@ public class Person {
                 "\t  " + getAddress().getCity() + " " + getAddress().getState() + " " + getAddress().getZipCode() + "\n";
     }
 
+    /**
+     * Persons are identified by their uuid, so comparing or hashing a person never loads its e-mails,
+     * and the result does not change as e-mails are added.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Person person = (Person) o;
-        return Objects.equals(uuid, person.uuid) && Objects.equals(firstName, person.firstName) && Objects.equals(lastName, person.lastName) && Objects.equals(address, person.address) && Objects.equals(emailList, person.emailList);
+        return Objects.equals(uuid, person.uuid);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uuid, firstName, lastName, address, emailList);
+        return Objects.hashCode(uuid);
     }
 }
\ No newline at end of file
@@ -5,7 +5,6 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
 import java.time.LocalDate;
-import java.time.Period;
 import java.util.Objects;
 
 /**
@@ -17,9 +16,14 @@ import java.util.Objects;
 @XStreamAlias("productLease")
 public class ProductLease extends Item {
     @XStreamOmitField
-    private LocalDate startDate;
+    private static final ReportFormatter.Layout REPORT_LINE =
+            ReportFormatter.compile("%s (%s) - Lease for %d months \n %60s %9.2f $%9.2f");
     @XStreamOmitField
-    private LocalDate endDate;
+    private int startDay = IsoDates.NO_DATE;
+    @XStreamOmitField
+    private int endDay = IsoDates.NO_DATE;
+    @XStreamOmitField
+    private int periodInMonths;
     @Expose
     private double price;
 
@@ -34,22 +38,27 @@ public class ProductLease extends Item {
     }
 
     public ProductLease(Item productBeingLeased, String startDate, String endDate) {
-        super(productBeingLeased.getUniqueCode(), productBeingLeased.getName());
-        this.startDate = LocalDate.parse(startDate);
-        this.endDate = LocalDate.parse(endDate);
-        this.price = productBeingLeased.getBasePrice();
+        this(0, productBeingLeased, startDate, endDate);
     }
 
     public ProductLease(int id, Item productBeingLeased, String startDate, String endDate) {
-        super(id, productBeingLeased.getUniqueCode(), productBeingLeased.getName());
-        this.startDate = LocalDate.parse(startDate);
-        this.endDate = LocalDate.parse(endDate);
+        this(id, productBeingLeased, IsoDates.parseEpochDay(startDate), IsoDates.parseEpochDay(endDate));
+    }
+
+    /**
+     * Creates a lease from dates already held as epoch days.
+     * The length of the lease in months is computed once, here.
+     */
+    public ProductLease(int id, Item productBeingLeased, int startEpochDay, int endEpochDay) {
+        super(id, productBeingLeased);
+        this.startDay = startEpochDay;
+        this.endDay = endEpochDay;
+        this.periodInMonths = IsoDates.monthsBetween(startEpochDay, endEpochDay);
         this.price = productBeingLeased.getBasePrice();
     }
 
     public int getPeriodInMonths() {
-        Period period = Period.between(this.startDate, this.endDate);
-        return period.getYears() * 12 + period.getMonths();
+        return periodInMonths;
     }
 
     public double getMarkupPrice() {
@@ -65,12 +74,12 @@ public class ProductLease extends Item {
     }
 
     @Override
-    public double getGrossPrice() {
+    protected double computeGrossPrice() {
         return getFirstMonthPrice();
     }
 
     @Override
-    public double getTotalTax() {
+    protected double computeTotalTax() {
         return 0;
     }
 
@@ -80,16 +89,35 @@ public class ProductLease extends Item {
     }
 
     public LocalDate getStartDate() {
-        return startDate;
+        return startDay == IsoDates.NO_DATE ? null : LocalDate.ofEpochDay(startDay);
     }
 
     public LocalDate getEndDate() {
-        return endDate;
+        return endDay == IsoDates.NO_DATE ? null : LocalDate.ofEpochDay(endDay);
+    }
+
+    public int getStartEpochDay() {
+        return startDay;
+    }
+
+    public int getEndEpochDay() {
+        return endDay;
+    }
+
+    @Override
+    public ItemType getType() {
+        return ItemType.LEASE;
     }
 
     @Override
     public String toString() {
-        return String.format("%s - Lease for %s months \n %60s %9.2f $%9.2f", getName() + " (" + getUniqueCode() + ")", getPeriodInMonths(), "$", getTotalTax(), getGrossPrice());
+        return ReportFormatter.render(this::appendTo);
+    }
+
+    @Override
+    void appendTo(ReportFormatter out) {
+        out.line(REPORT_LINE).text(getName()).text(getUniqueCode()).number(getPeriodInMonths())
+                .text("$").decimal(getTotalTax()).decimal(getGrossPrice());
     }
 
     @Override
@@ -97,11 +125,11 @@ public class ProductLease extends Item {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ProductLease that = (ProductLease) o;
-        return Double.compare(price, that.getBasePrice()) == 0 && Objects.equals(startDate, that.startDate) && Objects.equals(endDate, that.endDate);
+        return Double.compare(price, that.getBasePrice()) == 0 && startDay == that.startDay && endDay == that.endDay;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), startDate, endDate, price);
+        return Objects.hash(super.hashCode(), startDay, endDay, price);
     }
 }
\ No newline at end of file
@@ -13,6 +13,8 @@ import com.thoughtworks.xstream.annotations.XStreamOmitField;
 public class ProductPurchase extends Item {
     @XStreamOmitField
     private static final double TAX_PERCENTAGE = 0.065;
+    @XStreamOmitField
+    private static final ReportFormatter.Layout REPORT_LINE = ReportFormatter.compile("%s (%s) \n %60s %9.2f $%9.2f");
     @Expose
     private double price;
 
@@ -27,17 +29,22 @@ public class ProductPurchase extends Item {
     }
 
     public ProductPurchase(Item item) {
-        super(item.getUniqueCode(), item.getName());
+        super(0, item);
+        this.price = item.getBasePrice();
+    }
+
+    public ProductPurchase(int id, Item item) {
+        super(id, item);
         this.price = item.getBasePrice();
     }
 
     @Override
-    public double getGrossPrice() {
+    protected double computeGrossPrice() {
         return Math.round(100 * price) / 100.0;
     }
 
     @Override
-    public double getTotalTax() {
+    protected double computeTotalTax() {
         return Math.round(100 * price * TAX_PERCENTAGE) / 100.0;
     }
 
@@ -46,9 +53,20 @@ public class ProductPurchase extends Item {
         return getGrossPrice();
     }
 
+    @Override
+    public ItemType getType() {
+        return ItemType.PRODUCT;
+    }
+
     @Override
     public String toString() {
-        return String.format("%s \n %60s %9.2f $%9.2f", getName() + " (" + getUniqueCode() + ")", "$", getTotalTax(), getGrossPrice());
+        return ReportFormatter.render(this::appendTo);
+    }
+
+    @Override
+    void appendTo(ReportFormatter out) {
+        out.line(REPORT_LINE).text(getName()).text(getUniqueCode())
+                .text("$").decimal(getTotalTax()).decimal(getGrossPrice());
     }
 
     @Override
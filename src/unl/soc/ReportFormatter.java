@@ -0,0 +1,404 @@
+package unl.soc;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The ReportFormatter class renders the fixed-width report lines that were written with String.format.
+ * A line pattern is compiled once into a {@link Layout}, and each line is then written column by column,
+ * with typed values, straight into a reusable char buffer: no pattern is parsed and no argument is boxed per line.
+ * <p>
+ * Patterns use the subset of the Formatter syntax found in the reports: <code>%s</code>, <code>%d</code> and
+ * <code>%f</code> with an optional width, a <code>-</code> flag for left justification and a precision for
+ * <code>%f</code>, plus <code>%%</code>. The output is the output of String.format in an English locale.
+ * Decimals are rounded half up from the shortest decimal representation of the double, as Formatter does;
+ * money amounts away from a half cent take a fast path on <code>Math.round</code> of the cents.
+ * <p>
+ * A formatter is not thread safe. Reports create one and reuse it for every line.
+ */
+public final class ReportFormatter {
+
+    /**
+     * Largest magnitude formatted through whole cents, small enough for the cents to be exact to well under 1/1000.
+     */
+    private static final double FAST_PATH_LIMIT = 1e9;
+
+    /**
+     * Distance to a half cent below which the rounding is left to BigDecimal.
+     */
+    private static final double HALF_CENT_MARGIN = 1e-3;
+
+    private char[] buffer;
+    private int length;
+
+    private Layout layout;
+    private int column;
+
+    public ReportFormatter() {
+        this(256);
+    }
+
+    /**
+     * Creates an empty formatter.
+     *
+     * @param capacity The initial size of the buffer, in chars.
+     */
+    public ReportFormatter(int capacity) {
+        this.buffer = new char[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Compiles a line pattern.
+     *
+     * @param pattern The pattern, in Formatter syntax.
+     * @return The layout of the pattern.
+     * @throws IllegalArgumentException if the pattern uses a conversion or flag that is not supported.
+     */
+    public static Layout compile(String pattern) {
+        return new Layout(pattern);
+    }
+
+    /**
+     * Renders into a new formatter and returns the text, for toString methods.
+     *
+     * @param renderer Writes the text to the formatter.
+     * @return The text rendered.
+     */
+    public static String render(Consumer<ReportFormatter> renderer) {
+        ReportFormatter out = new ReportFormatter();
+        renderer.accept(out);
+        return out.toString();
+    }
+
+    /**
+     * Starts a line. The columns of the layout must then be written in order with {@link #text}, {@link #number}
+     * and {@link #decimal}; the literal text around them is written as they are.
+     *
+     * @param layout The layout of the line.
+     * @return This formatter.
+     * @throws IllegalStateException if the previous line is missing columns.
+     */
+    public ReportFormatter line(Layout layout) {
+        checkLineComplete();
+        this.layout = layout;
+        this.column = 0;
+        appendLiteral();
+        if (layout.conversions.length == 0) {
+            this.layout = null;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the next column of the line, a <code>%s</code> column.
+     *
+     * @param value The text, or null to print "null".
+     * @return This formatter.
+     */
+    public ReportFormatter text(String value) {
+        nextColumn('s');
+        String text = String.valueOf(value);
+        int width = layout.widths[column];
+        boolean left = layout.leftJustified[column];
+        if (!left) {
+            pad(width - text.length());
+        }
+        append(text);
+        if (left) {
+            pad(width - text.length());
+        }
+        return endColumn();
+    }
+
+    /**
+     * Writes the next column of the line, a <code>%d</code> column.
+     *
+     * @param value The number.
+     * @return This formatter.
+     */
+    public ReportFormatter number(long value) {
+        nextColumn('d');
+        int digits = digitCount(value);
+        int size = value < 0 ? digits + 1 : digits;
+        int width = layout.widths[column];
+        boolean left = layout.leftJustified[column];
+        if (!left) {
+            pad(width - size);
+        }
+        if (value < 0) {
+            append('-');
+        }
+        appendDigits(value, digits);
+        if (left) {
+            pad(width - size);
+        }
+        return endColumn();
+    }
+
+    /**
+     * Writes the next column of the line, a <code>%f</code> column.
+     *
+     * @param value The decimal.
+     * @return This formatter.
+     */
+    public ReportFormatter decimal(double value) {
+        nextColumn('f');
+        int start = length;
+        appendDecimal(value, layout.precisions[column]);
+        int width = layout.widths[column];
+        int size = length - start;
+        if (size < width) {
+            if (layout.leftJustified[column]) {
+                pad(width - size);
+            } else {
+                // Shift the digits right and pad in front of them
+                int padding = width - size;
+                ensureCapacity(length + padding);
+                System.arraycopy(buffer, start, buffer, start + padding, size);
+                Arrays.fill(buffer, start, start + padding, ' ');
+                length += padding;
+            }
+        }
+        return endColumn();
+    }
+
+    /**
+     * Appends free text, outside of any line layout.
+     *
+     * @param text The text.
+     * @return This formatter.
+     */
+    public ReportFormatter append(String text) {
+        int size = text.length();
+        ensureCapacity(length + size);
+        text.getChars(0, size, buffer, length);
+        length += size;
+        return this;
+    }
+
+    public ReportFormatter append(char c) {
+        ensureCapacity(length + 1);
+        buffer[length++] = c;
+        return this;
+    }
+
+    /**
+     * @return The number of chars rendered.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity for the next report.
+     */
+    public void clear() {
+        checkLineComplete();
+        length = 0;
+    }
+
+    /**
+     * @return The text rendered.
+     * @throws IllegalStateException if the current line is missing columns.
+     */
+    @Override
+    public String toString() {
+        checkLineComplete();
+        return new String(buffer, 0, length);
+    }
+
+    private void nextColumn(char conversion) {
+        if (layout == null) {
+            throw new IllegalStateException("No line in progress");
+        }
+        if (layout.conversions[column] != conversion) {
+            throw new IllegalStateException("Column " + (column + 1) + " of \"" + layout.pattern + "\" is %"
+                    + layout.conversions[column] + ", not %" + conversion);
+        }
+    }
+
+    private ReportFormatter endColumn() {
+        column++;
+        appendLiteral();
+        if (column == layout.conversions.length) {
+            layout = null;
+        }
+        return this;
+    }
+
+    private void appendLiteral() {
+        append(layout.literals[column]);
+    }
+
+    private void checkLineComplete() {
+        if (layout != null) {
+            throw new IllegalStateException("Line \"" + layout.pattern + "\" stopped at column " + (column + 1));
+        }
+    }
+
+    private void appendDecimal(double value, int precision) {
+        if (Double.isNaN(value)) {
+            append("NaN");
+            return;
+        }
+        if (Double.isInfinite(value)) {
+            append(value > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+        // The sign of the value is kept even when it rounds to zero, as "-0.00"
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        double magnitude = Math.abs(value);
+        if (precision == 2 && magnitude < FAST_PATH_LIMIT) {
+            double scaled = magnitude * 100;
+            long cents = (long) scaled;
+            double fraction = scaled - cents;
+            if (Math.abs(fraction - 0.5) > HALF_CENT_MARGIN) {
+                if (fraction > 0.5) {
+                    cents++;
+                }
+                if (negative) {
+                    append('-');
+                }
+                long units = cents / 100;
+                appendDigits(units, digitCount(units));
+                append('.');
+                int remainder = (int) (cents % 100);
+                append((char) ('0' + remainder / 10));
+                append((char) ('0' + remainder % 10));
+                return;
+            }
+        }
+        BigDecimal rounded = new BigDecimal(Double.toString(magnitude)).setScale(precision, RoundingMode.HALF_UP);
+        if (negative) {
+            append('-');
+        }
+        append(rounded.toPlainString());
+    }
+
+    private void appendDigits(long value, int digits) {
+        ensureCapacity(length + digits);
+        int position = length + digits;
+        // Digits are taken from a negative value, so Long.MIN_VALUE needs no special case
+        long remaining = value > 0 ? -value : value;
+        do {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        length += digits;
+    }
+
+    private static int digitCount(long value) {
+        long remaining = value > 0 ? -value : value;
+        int digits = 1;
+        while (remaining <= -10) {
+            remaining /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void pad(int count) {
+        if (count > 0) {
+            ensureCapacity(length + count);
+            Arrays.fill(buffer, length, length + count, ' ');
+            length += count;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    /**
+     * A compiled line pattern: the literal text before each column, after the last one, and the columns.
+     */
+    public static final class Layout {
+        private final String pattern;
+        private final String[] literals;
+        private final char[] conversions;
+        private final int[] widths;
+        private final boolean[] leftJustified;
+        private final int[] precisions;
+
+        private Layout(String pattern) {
+            this.pattern = pattern;
+            int columns = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                if (pattern.charAt(i) == '%') {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '%') {
+                        i++;
+                    } else {
+                        columns++;
+                    }
+                }
+            }
+            this.literals = new String[columns + 1];
+            this.conversions = new char[columns];
+            this.widths = new int[columns];
+            this.leftJustified = new boolean[columns];
+            this.precisions = new int[columns];
+
+            StringBuilder literal = new StringBuilder();
+            int column = 0;
+            int i = 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i++);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                if (i < pattern.length() && pattern.charAt(i) == '%') {
+                    literal.append('%');
+                    i++;
+                    continue;
+                }
+                literals[column] = literal.toString();
+                literal.setLength(0);
+                if (i < pattern.length() && pattern.charAt(i) == '-') {
+                    leftJustified[column] = true;
+                    i++;
+                }
+                int width = 0;
+                while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+                    width = width * 10 + pattern.charAt(i++) - '0';
+                }
+                int precision = -1;
+                if (i < pattern.length() && pattern.charAt(i) == '.') {
+                    i++;
+                    precision = 0;
+                    while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+                        precision = precision * 10 + pattern.charAt(i++) - '0';
+                    }
+                }
+                if (i == pattern.length()) {
+                    throw new IllegalArgumentException("Unterminated column in \"" + pattern + "\"");
+                }
+                char conversion = pattern.charAt(i++);
+                if (conversion != 's' && conversion != 'd' && conversion != 'f') {
+                    throw new IllegalArgumentException("Unsupported conversion %" + conversion + " in \"" + pattern + "\"");
+                }
+                if (precision >= 0 && conversion != 'f') {
+                    throw new IllegalArgumentException("Precision on %" + conversion + " in \"" + pattern + "\"");
+                }
+                if (leftJustified[column] && width == 0) {
+                    throw new IllegalArgumentException("Left justification without a width in \"" + pattern + "\"");
+                }
+                conversions[column] = conversion;
+                widths[column] = width;
+                // Formatter prints 6 decimals by default
+                precisions[column] = precision >= 0 ? precision : 6;
+                column++;
+            }
+            literals[column] = literal.toString();
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+    }
+}
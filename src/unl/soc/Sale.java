@@ -2,8 +2,11 @@ package unl.soc;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * The Purchase class represents a purchase made at a store.
@@ -12,20 +15,28 @@ import java.util.Objects;
  * It includes Getters, ToString, HashCode and Equals methods
  */
 public class Sale implements Priceable {
+    private static final ReportFormatter.Layout ITEMS_HEADER = ReportFormatter.compile("Items (%d) %61s %10s\n");
+    private static final ReportFormatter.Layout SUBTOTALS = ReportFormatter.compile("%58s %2s %9.2f %1s %8.2f\n");
+    private static final ReportFormatter.Layout GRAND_TOTAL = ReportFormatter.compile("%58s %14s %8.2f\n");
+
     private final String uniqueCode;
     private final Store store;
     private final Person customer;
     private final Person salesman;
-    private final LocalDate dateTime;
+    private final int saleDay;
     private int id;
     private final List<Item> itemsList;
+    private transient volatile Function<Sale, List<Item>> itemsLoader;
+    private OffHeapLineItems offHeapItems;
+    private int firstLine;
+    private int lineCount;
 
     public Sale(String uniqueCode, Store store, Person customer, Person salesman, String dateString) {
         this.uniqueCode = uniqueCode;
         this.store = store;
         this.customer = customer;
         this.salesman = salesman;
-        this.dateTime = LocalDate.parse(dateString);
+        this.saleDay = IsoDates.parseEpochDay(dateString);
         this.itemsList = new ArrayList<>();
     }
 
@@ -35,7 +46,7 @@ public class Sale implements Priceable {
         this.store = store;
         this.customer = customer;
         this.salesman = salesman;
-        this.dateTime = LocalDate.parse(dateString);
+        this.saleDay = IsoDates.parseEpochDay(dateString);
         this.itemsList = new ArrayList<>();
     }
 
@@ -54,6 +65,10 @@ public class Sale implements Priceable {
      */
     @Override
     public double getGrossPrice() {
+        if (offHeapItems != null) {
+            return offHeapItems.grossCents(firstLine, lineCount) / 100.0;
+        }
+        loadItems();
         double total = 0;
         for (Item item : this.itemsList) {
             total += item.getGrossPrice();
@@ -68,6 +83,10 @@ public class Sale implements Priceable {
      */
     @Override
     public double getTotalTax() {
+        if (offHeapItems != null) {
+            return offHeapItems.taxCents(firstLine, lineCount) / 100.0;
+        }
+        loadItems();
         double total = 0;
         for (Item item : this.itemsList) {
             total += item.getTotalTax();
@@ -76,9 +95,79 @@ public class Sale implements Priceable {
     }
 
     public void addItem(Item item) {
+        if (offHeapItems != null) {
+            throw new IllegalStateException("Items of sale " + uniqueCode + " are stored off-heap");
+        }
+        loadItems();
         this.itemsList.add(item);
     }
 
+    /**
+     * Defers loading the items of this sale until they are first used.
+     *
+     * @param loader Loads the items of a sale; called at most once.
+     */
+    void setItemsLoader(Function<Sale, List<Item>> loader) {
+        this.itemsLoader = loader;
+    }
+
+    /**
+     * Tells whether the items of this sale are still waiting to be loaded.
+     *
+     * @return true if a loader is pending.
+     */
+    boolean isItemsLoadPending() {
+        return itemsLoader != null;
+    }
+
+    /**
+     * Hands this sale items loaded along with the items of other sales, in place of its pending loader.
+     * Does nothing if the items were loaded in the meantime.
+     *
+     * @param items The items of this sale.
+     */
+    synchronized void setLoadedItems(List<Item> items) {
+        if (itemsLoader != null) {
+            this.itemsList.addAll(items);
+            this.itemsLoader = null;
+        }
+    }
+
+    /**
+     * Runs the pending items loader, if any.
+     */
+    private void loadItems() {
+        if (itemsLoader != null) {
+            synchronized (this) {
+                Function<Sale, List<Item>> loader = itemsLoader;
+                if (loader != null) {
+                    this.itemsList.addAll(loader.apply(this));
+                    this.itemsLoader = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the items of this sale to an off-heap store, as one contiguous range of records.
+     * Prices are then summed from the records, and {@link #getItemsList()} materializes the items on each call.
+     *
+     * @param lines The store to append the items to.
+     */
+    void moveItemsOffHeap(OffHeapLineItems lines) {
+        if (offHeapItems != null) {
+            throw new IllegalStateException("Items of sale " + uniqueCode + " are already stored off-heap");
+        }
+        loadItems();
+        this.firstLine = lines.size();
+        for (Item item : this.itemsList) {
+            lines.append(item);
+        }
+        this.lineCount = this.itemsList.size();
+        this.offHeapItems = lines;
+        this.itemsList.clear();
+    }
+
     public String getUniqueCode() {
         return uniqueCode;
     }
@@ -87,8 +176,45 @@ public class Sale implements Priceable {
         return store;
     }
 
+    /**
+     * Gets the items of the sale as a read only view, not a copy. Items stored off-heap are materialized
+     * into a new list on each call; use {@link #getItemCount()} or {@link #forEachItem} when a copy is not needed.
+     *
+     * @return The items of the sale.
+     */
     public List<Item> getItemsList() {
-        return new ArrayList<>(itemsList);
+        if (offHeapItems != null) {
+            return offHeapItems.toItems(firstLine, lineCount);
+        }
+        loadItems();
+        return Collections.unmodifiableList(itemsList);
+    }
+
+    /**
+     * Counts the items of the sale, without materializing items stored off-heap.
+     *
+     * @return The number of items.
+     */
+    public int getItemCount() {
+        if (offHeapItems != null) {
+            return lineCount;
+        }
+        loadItems();
+        return itemsList.size();
+    }
+
+    /**
+     * Hands each item of the sale to the given action, in the order they were added.
+     *
+     * @param action The action receiving each item.
+     */
+    public void forEachItem(Consumer<? super Item> action) {
+        if (offHeapItems != null) {
+            offHeapItems.forEach(firstLine, lineCount, view -> action.accept(view.toItem()));
+            return;
+        }
+        loadItems();
+        itemsList.forEach(action);
     }
 
     public Person getCustomer() {
@@ -100,7 +226,16 @@ public class Sale implements Priceable {
     }
 
     public LocalDate getDateTime() {
-        return dateTime;
+        return LocalDate.ofEpochDay(saleDay);
+    }
+
+    /**
+     * Gets the date of the sale as a day count, without building a LocalDate.
+     *
+     * @return The epoch day of the sale date.
+     */
+    public int getEpochDay() {
+        return saleDay;
     }
 
     public double getNetPrice() {
@@ -109,34 +244,46 @@ public class Sale implements Priceable {
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Sale    #").append(this.uniqueCode).append("\n");
-        sb.append("Store   #").append(this.getStore().getStoreCode()).append("\n");
-        sb.append("Date     ").append(this.getDateTime()).append("\n");
-        sb.append("Customer:\n").append(customer).append("\n");
-        sb.append("Sales Person:\n").append(salesman).append("\n");
-        sb.append(String.format("Items (%d) %61s %10s\n", getItemsList().size(), "Tax", "Total"));
-        sb.append("-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-                    -=-=-=-=-=-= -=-=-=-=-=\n");
-        for (Item item : itemsList) {
-            sb.append(item).append("\n");
-        }
-        sb.append("                                                           -=-=-=-=-=-= -=-=-=-=-=\n");
-        sb.append(String.format("%58s %2s %9.2f %1s %8.2f\n", "Subtotals", "$", getTotalTax(), "$", getGrossPrice()));
-        sb.append(String.format("%58s %14s %8.2f\n", "Grand total", "$", getNetPrice()));
-        sb.append("__________________________________________________________________________________\n");
-        return sb.toString();
+        return ReportFormatter.render(this::appendTo);
     }
 
+    /**
+     * Appends the report of this sale, as printed by toString, to a report being rendered.
+     *
+     * @param out The report.
+     */
+    void appendTo(ReportFormatter out) {
+        out.append("Sale    #").append(String.valueOf(this.uniqueCode)).append('\n');
+        out.append("Store   #").append(String.valueOf(this.getStore().getStoreCode())).append('\n');
+        out.append("Date     ").append(this.getDateTime().toString()).append('\n');
+        out.append("Customer:\n").append(String.valueOf(customer)).append('\n');
+        out.append("Sales Person:\n").append(String.valueOf(salesman)).append('\n');
+        out.line(ITEMS_HEADER).number(getItemCount()).text("Tax").text("Total");
+        out.append("-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-                    -=-=-=-=-=-= -=-=-=-=-=\n");
+        forEachItem(item -> {
+            item.appendTo(out);
+            out.append('\n');
+        });
+        out.append("                                                           -=-=-=-=-=-= -=-=-=-=-=\n");
+        out.line(SUBTOTALS).text("Subtotals").text("$").decimal(getTotalTax()).text("$").decimal(getGrossPrice());
+        out.line(GRAND_TOTAL).text("Grand total").text("$").decimal(getNetPrice());
+        out.append("__________________________________________________________________________________\n");
+    }
+
+    /**
+     * Sales are identified by their unique code, so comparing or hashing a sale never walks its store,
+     * persons or items, and the result does not change as items are added.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Sale sale = (Sale) o;
-        return Objects.equals(uniqueCode, sale.uniqueCode) && Objects.equals(store, sale.store) && Objects.equals(customer, sale.customer) && Objects.equals(salesman, sale.salesman) && Objects.equals(dateTime, sale.dateTime) && Objects.equals(itemsList, sale.itemsList);
+        return Objects.equals(uniqueCode, sale.uniqueCode);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uniqueCode, store, customer, salesman, dateTime, itemsList);
+        return Objects.hashCode(uniqueCode);
     }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package unl.soc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The SalesSummary class maintains the StoreSalesSummary and StoreDaySummary tables.
+ * They hold, per store and per store and day, the number of sales and line items and the gross and tax totals,
+ * so store reports read one row per store instead of rebuilding every sale.
+ * <p>
+ * Writers report each new sale and line item with {@link #apply(Connection, Collection)} on the connection
+ * of their own insert, so the summaries commit or roll back together with the data.
+ */
+public class SalesSummary {
+    private static final Logger LOGGER = LogManager.getLogger(SalesSummary.class);
+
+    private static final String UPSERT_STORE = """
+            insert into StoreSalesSummary (storeId, saleCount, itemCount, grossTotal, taxTotal) values (?, ?, ?, ?, ?)
+            on duplicate key update saleCount = saleCount + values(saleCount), itemCount = itemCount + values(itemCount),
+            grossTotal = grossTotal + values(grossTotal), taxTotal = taxTotal + values(taxTotal)
+            """;
+
+    private static final String UPSERT_STORE_DAY = """
+            insert into StoreDaySummary (storeId, saleDate, saleCount, itemCount, grossTotal, taxTotal) values (?, ?, ?, ?, ?, ?)
+            on duplicate key update saleCount = saleCount + values(saleCount), itemCount = itemCount + values(itemCount),
+            grossTotal = grossTotal + values(grossTotal), taxTotal = taxTotal + values(taxTotal)
+            """;
+
+    /**
+     * Recomputes the store day summaries from the line prices, summed in cents per store and day.
+     */
+    private static final String REBUILD_STORE_DAY = """
+            insert into StoreDaySummary (storeId, saleDate, saleCount, itemCount, grossTotal, taxTotal)
+            select s.storeId, s.saleDate, count(distinct s.saleId), count(l.saleId),
+            coalesce(sum(l.grossCents), 0) / 100, coalesce(sum(l.taxCents), 0) / 100
+            from Sale s
+            left join (%s) l on l.saleId = s.saleId
+            group by s.storeId, s.saleDate
+            """.formatted(SqlAggregates.LINE_PRICES);
+
+    /**
+     * Recomputes the store summaries from the store day summaries.
+     */
+    private static final String REBUILD_STORE = """
+            insert into StoreSalesSummary (storeId, saleCount, itemCount, grossTotal, taxTotal)
+            select storeId, sum(saleCount), sum(itemCount), sum(grossTotal), sum(taxTotal)
+            from StoreDaySummary
+            group by storeId
+            """;
+
+    private static final String STORE_TOTALS = """
+            select s.storeId, s.storeCode, p.firstName, p.lastName,
+            coalesce(t.saleCount, 0) saleCount, coalesce(t.itemCount, 0) itemCount,
+            coalesce(t.grossTotal, 0) grossTotal, coalesce(t.taxTotal, 0) taxTotal
+            from Store s
+            left join Person p on p.personId = s.managerId
+            left join %s t on t.storeId = s.storeId
+            """;
+
+    /**
+     * A change to the totals of one store on one day.
+     *
+     * @param storeId  The ID of the store.
+     * @param saleDate The date of the sale.
+     * @param sales    The number of sales added.
+     * @param items    The number of line items added.
+     * @param gross    The gross price added.
+     * @param tax      The tax added.
+     */
+    public record Delta(int storeId, LocalDate saleDate, int sales, int items, double gross, double tax) {
+
+        public static Delta ofSale(int storeId, LocalDate saleDate) {
+            return new Delta(storeId, saleDate, 1, 0, 0, 0);
+        }
+
+        public static Delta ofLineItem(int storeId, LocalDate saleDate, Priceable lineItem) {
+            return new Delta(storeId, saleDate, 0, 1, lineItem.getGrossPrice(), lineItem.getTotalTax());
+        }
+    }
+
+    /**
+     * The totals of one store, along with what the store report prints about its manager.
+     */
+    public record StoreTotals(int storeId, String storeCode, String managerFirstName, String managerLastName,
+                              int saleCount, int itemCount, double grossTotal, double taxTotal) {
+
+        public double getNetTotal() {
+            return grossTotal + taxTotal;
+        }
+    }
+
+    /**
+     * Adds the given changes to both summary tables, using the caller's connection and transaction.
+     *
+     * @param conn   The connection the data was written on.
+     * @param deltas The changes to apply.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    public static void apply(Connection conn, Collection<Delta> deltas) throws SQLException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement store = conn.prepareStatement(UPSERT_STORE);
+             PreparedStatement storeDay = conn.prepareStatement(UPSERT_STORE_DAY)) {
+            for (Delta delta : deltas) {
+                store.setInt(1, delta.storeId());
+                store.setInt(2, delta.sales());
+                store.setInt(3, delta.items());
+                store.setDouble(4, delta.gross());
+                store.setDouble(5, delta.tax());
+                store.addBatch();
+
+                storeDay.setInt(1, delta.storeId());
+                storeDay.setDate(2, Date.valueOf(delta.saleDate()));
+                storeDay.setInt(3, delta.sales());
+                storeDay.setInt(4, delta.items());
+                storeDay.setDouble(5, delta.gross());
+                storeDay.setDouble(6, delta.tax());
+                storeDay.addBatch();
+            }
+            store.executeBatch();
+            storeDay.executeBatch();
+        }
+    }
+
+    /**
+     * Recomputes both summary tables from the Sale and ItemSale tables.
+     * Used to backfill existing data and after bulk loads that bypass the incremental updates.
+     */
+    public static void rebuild() {
+        Connection conn = ConnFactory.createConnection();
+        try {
+            conn.setAutoCommit(false);
+            rebuild(conn);
+            conn.commit();
+        } catch (SQLException e) {
+            LOGGER.error("Error rebuilding sales summaries: ", e);
+            rollback(conn);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Recomputes both summary tables on the given connection, inside the database: the line prices of
+     * {@link SqlAggregates} are grouped by store and day, then the store days by store.
+     * Requires the stored line price columns of ItemSale.
+     *
+     * @param conn The connection to write on.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    static void rebuild(Connection conn) throws SQLException {
+        clear(conn);
+        try (Statement s = conn.createStatement()) {
+            int storeDays = s.executeUpdate(REBUILD_STORE_DAY);
+            s.executeUpdate(REBUILD_STORE);
+            LOGGER.debug("Rebuilt sales summaries for {} store days", storeDays);
+        }
+    }
+
+    /**
+     * Removes every row from both summary tables.
+     *
+     * @param conn The connection to write on.
+     * @throws SQLException if a SQL exception occurs.
+     */
+    public static void clear(Connection conn) throws SQLException {
+        try (Statement s = conn.createStatement()) {
+            s.executeUpdate("delete from StoreDaySummary");
+            s.executeUpdate("delete from StoreSalesSummary");
+        }
+    }
+
+    /**
+     * Loads the all time totals of every store, reading one summary row per store.
+     *
+     * @return The totals of every store, including stores without sales.
+     */
+    public static List<StoreTotals> loadStoreTotals() {
+        return loadStoreTotals(String.format(STORE_TOTALS, "StoreSalesSummary"), null, null);
+    }
+
+    /**
+     * Loads the totals of every store over a date window, reading the store day summaries of the window.
+     *
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return The totals of every store, including stores without sales in the window.
+     */
+    public static List<StoreTotals> loadStoreTotals(LocalDate from, LocalDate to) {
+        String window = """
+                (select storeId, sum(saleCount) saleCount, sum(itemCount) itemCount,
+                sum(grossTotal) grossTotal, sum(taxTotal) taxTotal
+                from StoreDaySummary where saleDate between ? and ? group by storeId)""";
+        return loadStoreTotals(String.format(STORE_TOTALS, window), from, to);
+    }
+
+    private static List<StoreTotals> loadStoreTotals(String query, LocalDate from, LocalDate to) {
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<StoreTotals> totals = new ArrayList<>();
+        try {
+            ps = conn.prepareStatement(query);
+            if (from != null) {
+                ps.setDate(1, Date.valueOf(from));
+                ps.setDate(2, Date.valueOf(to));
+            }
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                totals.add(new StoreTotals(rs.getInt("storeId"), rs.getString("storeCode"),
+                        rs.getString("firstName"), rs.getString("lastName"),
+                        rs.getInt("saleCount"), rs.getInt("itemCount"),
+                        rs.getDouble("grossTotal"), rs.getDouble("taxTotal")));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error loading store totals: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(rs, ps, conn);
+        }
+        return totals;
+    }
+
+    private static void rollback(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            LOGGER.error("Error rolling back: ", e);
+        }
+    }
+}
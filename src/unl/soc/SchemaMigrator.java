@@ -0,0 +1,231 @@
+package unl.soc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SchemaMigrator class brings an existing database up to the current schema.
+ * Applied migrations are recorded in the SchemaVersion table, and each migration runs once, in order.
+ * Every step checks the catalog before changing anything, so a migration interrupted half way
+ * can safely be run again.
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = LogManager.getLogger(SchemaMigrator.class);
+
+    /**
+     * The ordered migrations. New migrations are appended with the next version number.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Unique indexes on natural keys", conn -> {
+                createIndex(conn, "Person", "personUuidIdx", true, "uuid");
+                createIndex(conn, "Store", "storeCodeIdx", true, "storeCode");
+                createIndex(conn, "Item", "itemCodeIdx", true, "uniqueCode");
+                createIndex(conn, "Sale", "saleCodeIdx", true, "uniqueCode");
+            }),
+            new Migration(2, "Covering indexes on foreign key lookups", conn -> {
+                createIndex(conn, "Email", "emailPersonIdx", false, "personId", "address");
+                createIndex(conn, "ItemSale", "itemSaleSaleIdx", false, "saleId", "itemId");
+                createIndex(conn, "Sale", "storeSaleDateIdx", false, "storeId", "saleDate");
+            }),
+            new Migration(3, "Date types for date columns", conn -> {
+                execute(conn, "alter table Sale modify column saleDate date not null");
+                execute(conn, "alter table ItemSale modify column startDate date");
+                execute(conn, "alter table ItemSale modify column endDate date");
+                createIndex(conn, "Sale", "saleDateIdx", false, "saleDate");
+            }),
+            new Migration(4, "Store and store day sales summaries", conn -> {
+                execute(conn, """
+                        create table if not exists StoreSalesSummary(
+                        storeId int primary key not null,
+                        saleCount int not null,
+                        itemCount int not null,
+                        grossTotal decimal(15,2) not null,
+                        taxTotal decimal(15,2) not null,
+                        FOREIGN KEY (storeId) references Store(storeId))""");
+                execute(conn, """
+                        create table if not exists StoreDaySummary(
+                        storeId int not null,
+                        saleDate date not null,
+                        saleCount int not null,
+                        itemCount int not null,
+                        grossTotal decimal(15,2) not null,
+                        taxTotal decimal(15,2) not null,
+                        primary key (storeId, saleDate),
+                        FOREIGN KEY (storeId) references Store(storeId))""");
+                // Filled by migration 5, once the line prices they are summed from are stored
+            }),
+            new Migration(5, "Stored line prices on ItemSale", conn -> {
+                addColumn(conn, "ItemSale", "grossPrice", "decimal(12,2)");
+                addColumn(conn, "ItemSale", "tax", "decimal(12,2)");
+                addColumn(conn, "ItemSale", "netPrice", "decimal(12,2)");
+                LinePrices.backfill(conn);
+                try (Statement s = conn.createStatement();
+                     ResultSet rs = s.executeQuery("select exists(select 1 from Sale)")) {
+                    rs.next();
+                    if (rs.getBoolean(1)) {
+                        SalesSummary.rebuild(conn);
+                    }
+                }
+            }),
+            new Migration(6, "Change tracking for incremental reports", conn -> {
+                String updatedAt = "timestamp(6) not null default current_timestamp(6) on update current_timestamp(6)";
+                addColumn(conn, "Store", "updatedAt", updatedAt);
+                addColumn(conn, "Sale", "updatedAt", updatedAt);
+                addColumn(conn, "ItemSale", "updatedAt", updatedAt);
+                createIndex(conn, "Store", "storeUpdatedAtIdx", false, "updatedAt");
+                createIndex(conn, "Sale", "saleUpdatedAtIdx", false, "updatedAt");
+                createIndex(conn, "ItemSale", "itemSaleUpdatedAtIdx", false, "updatedAt");
+                execute(conn, "create table if not exists DataGeneration(generation varchar(36) not null)");
+                execute(conn, "insert into DataGeneration (generation) select uuid() from dual where not exists (select 1 from DataGeneration)");
+            })
+    );
+
+    /**
+     * Point lookups issued by DatabaseLoader and SalesData, each with sample parameters.
+     * After migrating, none of them may scan a whole table.
+     */
+    private static final List<String> LOOKUPS = List.of(
+            "select personId from Person where uuid = 'x'",
+            "select storeId from Store where storeCode = 'x'",
+            "select itemId from Item where uniqueCode = 'x'",
+            "select saleId from Sale where uniqueCode = 'x'",
+            "select address from Email where personId = 1",
+            "select itemSaleId from ItemSale where saleId = 1",
+            "select saleId from Sale where storeId = 1",
+            "select saleId from Sale where saleDate between '2024-01-01' and '2024-01-31'"
+    );
+
+    /**
+     * Applies every migration newer than the current schema version.
+     *
+     * @return The schema version after migrating.
+     */
+    public static int migrate() {
+        Connection conn = ConnFactory.createConnection();
+        try {
+            execute(conn, """
+                    create table if not exists SchemaVersion(
+                    version int primary key not null,
+                    description varchar(255) not null,
+                    appliedOn timestamp not null default current_timestamp)""");
+            int version = currentVersion(conn);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= version) {
+                    continue;
+                }
+                LOGGER.info("Applying schema migration {}: {}", migration.version(), migration.description());
+                migration.steps().apply(conn);
+                try (PreparedStatement ps = conn.prepareStatement("insert into SchemaVersion (version, description) values (?, ?)")) {
+                    ps.setInt(1, migration.version());
+                    ps.setString(2, migration.description());
+                    ps.executeUpdate();
+                }
+                version = migration.version();
+            }
+            return version;
+        } catch (SQLException e) {
+            LOGGER.error("Error migrating schema: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Runs EXPLAIN on every lookup that must be served by an index.
+     *
+     * @return A description of each lookup that scans a whole table, empty when all lookups use an index.
+     */
+    public static List<String> findFullScans() {
+        Connection conn = ConnFactory.createConnection();
+        List<String> fullScans = new ArrayList<>();
+        try {
+            for (String lookup : LOOKUPS) {
+                try (Statement s = conn.createStatement();
+                     ResultSet rs = s.executeQuery("explain " + lookup)) {
+                    while (rs.next()) {
+                        String type = rs.getString("type");
+                        LOGGER.debug("{} -> type {}, key {}, rows {}", lookup, type, rs.getString("key"), rs.getLong("rows"));
+                        if ("ALL".equals(type) || "index".equals(type)) {
+                            fullScans.add(lookup + " (table " + rs.getString("table") + ", type " + type + ")");
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error checking query plans: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(conn);
+        }
+        return fullScans;
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement s = conn.createStatement();
+             ResultSet rs = s.executeQuery("select coalesce(max(version), 0) from SchemaVersion")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Creates an index unless an index with the same name already exists on the table.
+     */
+    private static void createIndex(Connection conn, String table, String name, boolean unique, String... columns) throws SQLException {
+        String query = """
+                select count(*) from information_schema.statistics
+                where table_schema = database() and table_name = ? and index_name = ?
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(query)) {
+            ps.setString(1, table);
+            ps.setString(2, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        execute(conn, "create " + (unique ? "unique " : "") + "index " + name + " on " + table + " (" + String.join(", ", columns) + ")");
+    }
+
+    /**
+     * Adds a column unless the table already has a column with the same name.
+     */
+    private static void addColumn(Connection conn, String table, String column, String definition) throws SQLException {
+        String query = """
+                select count(*) from information_schema.columns
+                where table_schema = database() and table_name = ? and column_name = ?
+                """;
+        try (PreparedStatement ps = conn.prepareStatement(query)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        execute(conn, "alter table " + table + " add column " + column + " " + definition);
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement s = conn.createStatement()) {
+            s.execute(sql);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Steps {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Steps steps) {
+    }
+}
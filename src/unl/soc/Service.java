@@ -17,6 +17,12 @@ public class Service extends Item {
     @XStreamOmitField
     private static final double TAX_PERCENTAGE = 0.035;
     @XStreamOmitField
+    private static final ReportFormatter.Layout REPORT_LINE =
+            ReportFormatter.compile("%s (%s)  \n %20.2f hours @ $%6.2f / hour  \n %60s %9.2f $%9.2f");
+    @XStreamOmitField
+    private static final ReportFormatter.Layout SERVED_REPORT_LINE =
+            ReportFormatter.compile("%s (%s) - Served by %s, %s  \n %20.2f hours @ $%6.2f / hour  \n %60s %9.2f $%9.2f");
+    @XStreamOmitField
     private Person employee = null;
     @XStreamOmitField
     private double totalHours;
@@ -34,14 +40,14 @@ public class Service extends Item {
     }
 
     public Service(Item item, double totalHours, Person employee) {
-        super(item.getUniqueCode(), item.getName());
+        super(0, item);
         this.employee = employee;
         this.totalHours = totalHours;
         this.costPerHours = item.getBasePrice();
     }
 
     public Service(int id, Item item, double totalHours, Person employee) {
-        super(id, item.getUniqueCode(), item.getName());
+        super(id, item);
         this.employee = employee;
         this.totalHours = totalHours;
         this.costPerHours = item.getBasePrice();
@@ -56,12 +62,12 @@ public class Service extends Item {
     }
 
     @Override
-    public double getTotalTax() {
+    protected double computeTotalTax() {
         return Math.round(100 * getGrossPrice() * TAX_PERCENTAGE) / 100.0;
     }
 
     @Override
-    public double getGrossPrice() {
+    protected double computeGrossPrice() {
         return Math.round(100 * costPerHours * totalHours) / 100.0;
     }
 
@@ -71,12 +77,26 @@ public class Service extends Item {
         return Math.round(100 * costPerHours) / 100.0;
     }
 
+    @Override
+    public ItemType getType() {
+        return ItemType.SERVICE;
+    }
+
     @Override
     public String toString() {
+        return ReportFormatter.render(this::appendTo);
+    }
+
+    @Override
+    void appendTo(ReportFormatter out) {
         if (employee == null) {
-            return String.format("%s  \n %20.2f hours @ $%6.2f / hour  \n %60s %9.2f $%9.2f", getName() + " (" + getUniqueCode() + ")", getTotalHours(), costPerHours, "$", getTotalTax(), getGrossPrice());
+            out.line(REPORT_LINE).text(getName()).text(getUniqueCode());
+        } else {
+            out.line(SERVED_REPORT_LINE).text(getName()).text(getUniqueCode())
+                    .text(getEmployee().getLastName()).text(getEmployee().getFirstName());
         }
-        return String.format("%s - Served by %s  \n %20.2f hours @ $%6.2f / hour  \n %60s %9.2f $%9.2f", getName() + " (" + getUniqueCode() + ")", getEmployee().getLastName() + ", " + getEmployee().getFirstName(), getTotalHours(), costPerHours, "$", getTotalTax(), getGrossPrice());
+        out.decimal(getTotalHours()).decimal(costPerHours)
+                .text("$").decimal(getTotalTax()).decimal(getGrossPrice());
     }
 
     @Override
@@ -0,0 +1,207 @@
+package unl.soc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SqlAggregates class computes the report totals inside the database, with GROUP BY queries,
+ * so only one row per sale or per store is read instead of every sale, item and person.
+ * The rows are loaded as the report projections {@link DataReporter.SaleTotals} and {@link SalesSummary.StoreTotals},
+ * without building any Sale, Person or Item.
+ * <p>
+ * The line prices are the pricing rules of {@link ProductPurchase}, {@link ProductLease}, {@link Service},
+ * {@link DataPlan} and {@link VoicePlan} written as SQL expressions. They use double literals (<code>1e0</code>)
+ * so MySQL computes in double precision, with the operands in the same order as the Java code, and
+ * <code>floor(x + 0.5)</code> for <code>Math.round</code>. Each line is rounded to whole cents and the cents are
+ * summed exactly, so the totals match the Java computation to the cent.
+ * Lines whose prices were stored when they were written ({@link LinePrices}) are read as stored.
+ */
+public class SqlAggregates {
+    private static final Logger LOGGER = LogManager.getLogger(SqlAggregates.class);
+
+    /**
+     * One row per item sold with its sale and its gross price and tax in cents.
+     */
+    static final String LINE_PRICES = linePrices("");
+
+    /**
+     * One row per sale with its item count and its gross price and tax in cents,
+     * with a placeholder for a where clause on Sale (alias s).
+     */
+    private static final String SALE_TOTALS = """
+            select s.saleId, s.uniqueCode, s.storeId, st.storeCode, c.firstName, c.lastName,
+            count(l.saleId) itemCount, coalesce(sum(l.grossCents), 0) grossCents, coalesce(sum(l.taxCents), 0) taxCents
+            from Sale s
+            join Store st on st.storeId = s.storeId
+            join Person c on c.personId = s.customerId
+            left join (%s) l on l.saleId = s.saleId
+            %%s
+            group by s.saleId, s.uniqueCode, s.storeId, st.storeCode, c.firstName, c.lastName
+            order by s.saleId
+            """.formatted(LINE_PRICES);
+
+    /**
+     * One row per store, including stores without sales, with its sale and item counts and its
+     * gross price and tax in cents.
+     */
+    private static final String STORE_TOTALS = """
+            select st.storeId, st.storeCode, m.firstName, m.lastName,
+            count(t.saleId) saleCount, coalesce(sum(t.itemCount), 0) itemCount,
+            coalesce(sum(t.grossCents), 0) grossCents, coalesce(sum(t.taxCents), 0) taxCents
+            from Store st
+            left join Person m on m.personId = st.managerId
+            left join (select s.saleId, s.storeId, count(l.saleId) itemCount,
+            coalesce(sum(l.grossCents), 0) grossCents, coalesce(sum(l.taxCents), 0) taxCents
+            from Sale s
+            left join (%s) l on l.saleId = s.saleId
+            group by s.saleId, s.storeId) t on t.storeId = st.storeId
+            group by st.storeId, st.storeCode, m.firstName, m.lastName
+            order by st.storeId
+            """.formatted(LINE_PRICES);
+
+    /**
+     * Builds the query of the line prices, one row per item sold with its item sale ID, its sale ID and its
+     * gross price and tax in cents. Prices stored on the row are used as they are; the others are computed.
+     * The innermost query resolves the line type and the catalog base price, rounded like Item.getBasePrice(),
+     * the middle one the gross price and the outer one the tax, computed from the rounded gross price.
+     *
+     * @param filter A where clause, and any order or limit, applied to ItemSale (alias its), or an empty string.
+     * @return The query.
+     */
+    static String linePrices(String filter) {
+        return """
+                select l.itemSaleId, l.saleId,
+                coalesce(cast(l.storedGross * 100 as signed), l.grossCents) grossCents,
+                coalesce(cast(l.storedTax * 100 as signed), case l.lineType
+                when 'P' then floor(100e0 * l.price * 0.065e0 + 0.5e0)
+                when 'S' then floor(100e0 * (l.grossCents / 100e0) * 0.035e0 + 0.5e0)
+                when 'D' then floor((l.grossCents / 100e0) * 0.055e0 * 100e0 + 0.5e0)
+                when 'V' then floor(100e0 * (l.grossCents / 100e0) * 0.065e0 + 0.5e0)
+                else 0 end) taxCents
+                from (select p.itemSaleId, p.saleId, p.lineType, p.price, p.storedGross, p.storedTax,
+                case p.lineType
+                when 'P' then floor(100e0 * p.price + 0.5e0)
+                when 'L' then floor(100e0 * ((floor(100e0 * (p.price / 2e0) + 0.5e0) / 100e0 + p.price) / p.months) + 0.5e0)
+                when 'S' then floor(100e0 * p.price * p.totalHours + 0.5e0)
+                when 'D' then floor(p.price * p.totalGb * 100e0 + 0.5e0)
+                when 'V' then floor(100e0 * p.price * (p.totalPeriod / 30e0) + 0.5e0)
+                end grossCents
+                from (select its.itemSaleId, its.saleId,
+                case when i.type = 'P' and its.isLease then 'L' else i.type end lineType,
+                floor(100e0 * i.basePrice + 0.5e0) / 100e0 price,
+                timestampdiff(month, its.startDate, its.endDate) months,
+                its.totalHours, its.totalGb, its.totalPeriod, its.grossPrice storedGross, its.tax storedTax
+                from ItemSale its
+                join Item i on i.itemId = its.itemId
+                %s) p) l
+                """.formatted(filter);
+    }
+
+    /**
+     * Loads the totals of every sale, in sale ID order.
+     *
+     * @return The totals of every sale, as printed by the totals by sale report.
+     */
+    static List<DataReporter.SaleTotals> loadSaleTotals() {
+        return loadSaleTotals(saleTotals(""), null, null);
+    }
+
+    /**
+     * Loads the totals of the sales made within a date window, in sale ID order.
+     *
+     * @param from The first day of the window, inclusive.
+     * @param to   The last day of the window, inclusive.
+     * @return The totals of the sales of the window, as printed by the totals by sale report.
+     */
+    static List<DataReporter.SaleTotals> loadSaleTotals(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Empty date window: " + from + " to " + to);
+        }
+        return loadSaleTotals(saleTotals("where s.saleDate between ? and ?"), from, to);
+    }
+
+    /**
+     * Builds the query of the sale totals, one row per sale with its store ID and the columns read by
+     * {@link #readSaleTotals(ResultSet)}, in sale ID order.
+     *
+     * @param where A where clause on Sale (alias s), or an empty string.
+     * @return The query.
+     */
+    static String saleTotals(String where) {
+        return String.format(SALE_TOTALS, where);
+    }
+
+    /**
+     * Reads the totals of a sale from the current row of a sale totals query.
+     */
+    static DataReporter.SaleTotals readSaleTotals(ResultSet rs) throws SQLException {
+        double gross = rs.getLong("grossCents") / 100.0;
+        double tax = rs.getLong("taxCents") / 100.0;
+        return new DataReporter.SaleTotals(rs.getInt("saleId"), rs.getString("uniqueCode"),
+                rs.getString("storeCode"), rs.getString("lastName") + ", " + rs.getString("firstName"),
+                rs.getInt("itemCount"), tax, gross + tax);
+    }
+
+    private static List<DataReporter.SaleTotals> loadSaleTotals(String query, LocalDate from, LocalDate to) {
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<DataReporter.SaleTotals> totals = new ArrayList<>();
+        try {
+            ps = conn.prepareStatement(query);
+            if (from != null) {
+                ps.setDate(1, Date.valueOf(from));
+                ps.setDate(2, Date.valueOf(to));
+            }
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                totals.add(readSaleTotals(rs));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error aggregating sale totals: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(rs, ps, conn);
+        }
+        LOGGER.debug("Aggregated totals of {} sales", totals.size());
+        return totals;
+    }
+
+    /**
+     * Loads the totals of every store, in store ID order.
+     *
+     * @return The totals of every store, including stores without sales.
+     */
+    static List<SalesSummary.StoreTotals> loadStoreTotals() {
+        Connection conn = ConnFactory.createConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        List<SalesSummary.StoreTotals> totals = new ArrayList<>();
+        try {
+            ps = conn.prepareStatement(STORE_TOTALS);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                totals.add(new SalesSummary.StoreTotals(rs.getInt("storeId"), rs.getString("storeCode"),
+                        rs.getString("firstName"), rs.getString("lastName"),
+                        rs.getInt("saleCount"), rs.getInt("itemCount"),
+                        rs.getLong("grossCents") / 100.0, rs.getLong("taxCents") / 100.0));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Error aggregating store totals: ", e);
+            throw new RuntimeException(e);
+        } finally {
+            ConnFactory.closeConnection(rs, ps, conn);
+        }
+        LOGGER.debug("Aggregated totals of {} stores", totals.size());
+        return totals;
+    }
+}
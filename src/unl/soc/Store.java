@@ -4,8 +4,10 @@ import com.google.gson.annotations.Expose;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * The Store class represents a store where items are sold.
@@ -17,7 +19,7 @@ import java.util.Objects;
 public class Store {
     private int id;
     @Expose
-    private String storeCode;
+    private final String storeCode;
     @Expose
     private Person manager;
     @Expose
@@ -82,8 +84,26 @@ public class Store {
         return address;
     }
 
+    /**
+     * Gets the sales of the store as a read only view, not a copy.
+     *
+     * @return The sales of the store.
+     */
     public List<Sale> getSales() {
-        return new ArrayList<>(sales);
+        return Collections.unmodifiableList(sales);
+    }
+
+    public int getSaleCount() {
+        return sales.size();
+    }
+
+    /**
+     * Hands each sale of the store to the given action, in the order they were added.
+     *
+     * @param action The action receiving each sale.
+     */
+    public void forEachSale(Consumer<? super Sale> action) {
+        sales.forEach(action);
     }
 
     @Override
@@ -95,15 +115,26 @@ public class Store {
         } else {
             managerFullName = getManager().getFirstName() + " " + getManager().getLastName();
         }
-        List<Sale> saleList = getSales();
-        int numSales = saleList.size();
+        int numSales = getSaleCount();
         double totalPrice = getTotalSalePrice();
-        String formatString = "%-9s  %-20s  %5d  %3s  %8.2f";
-        return String.format(formatString, store, managerFullName, numSales, "$", totalPrice);
+        return ReportFormatter.render(out -> out.line(DataReporter.STORE_ROW)
+                .text(store).text(managerFullName).number(numSales).text("$").decimal(totalPrice));
+    }
+
+    /**
+     * Stores are identified by their store code, so comparing or hashing a store never walks its sales,
+     * and the result does not change as sales are added.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Store store = (Store) o;
+        return Objects.equals(storeCode, store.storeCode);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(storeCode, manager, address, sales);
+        return Objects.hashCode(storeCode);
     }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package unl.soc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The StringDictionary class deduplicates the strings read while loading data. Low-cardinality values such as
+ * state and city names, item codes and names, store codes and person names come back as a new String on
+ * every CSV line or result set row; interning them keeps one instance per distinct value for the whole load.
+ * <p>
+ * A dictionary is meant to live for one load and then be dropped, unlike {@link String#intern()} whose pool is
+ * never emptied. It counts its lookups so the dedupe ratio of a load can be logged. The dictionary is thread safe.
+ */
+public final class StringDictionary {
+
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * Returns the instance of the dictionary equal to the given string, adding the string when it is new.
+     *
+     * @param value The string read, or null.
+     * @return The shared instance, or null for a null string.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        lookups.increment();
+        String shared = strings.putIfAbsent(value, value);
+        return shared == null ? value : shared;
+    }
+
+    /**
+     * @return The number of non-null strings interned.
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return The number of distinct strings held.
+     */
+    public int getDistinctCount() {
+        return strings.size();
+    }
+
+    /**
+     * Returns how many strings were read for each one kept, 1.0 when nothing was shared.
+     *
+     * @return The lookup count divided by the distinct count, or 1.0 for an empty dictionary.
+     */
+    public double getDedupeRatio() {
+        int distinct = strings.size();
+        return distinct == 0 ? 1.0 : (double) lookups.sum() / distinct;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d strings, %d distinct (%.1fx)", getLookupCount(), getDistinctCount(), getDedupeRatio());
+    }
+}
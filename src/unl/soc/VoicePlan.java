@@ -16,6 +16,9 @@ public class VoicePlan extends Item {
 
     @XStreamOmitField
     private static final double TAX_PERCENTAGE = 0.065;
+    @XStreamOmitField
+    private static final ReportFormatter.Layout REPORT_LINE =
+            ReportFormatter.compile("%s (%s) - Voice %s \n %20.2f days @ $%.2f / 30 days \n %60s %9.2f $%9.2f");
 
     private int id;
     @XStreamOmitField
@@ -36,14 +39,14 @@ public class VoicePlan extends Item {
     }
 
     public VoicePlan(Item item, String phoneNumber, double totalPeriod) {
-        super(item.getUniqueCode(), item.getName());
+        super(0, item);
         this.phoneNumber = phoneNumber;
         this.totalPeriod = totalPeriod;
         this.periodCost = item.getBasePrice();
     }
 
     public VoicePlan(int id, Item item, String phoneNumber, double totalPeriod) {
-        super(id, item.getUniqueCode(), item.getName());
+        super(id, item);
         this.phoneNumber = phoneNumber;
         this.totalPeriod = totalPeriod;
         this.periodCost = item.getBasePrice();
@@ -66,12 +69,12 @@ public class VoicePlan extends Item {
     }
 
     @Override
-    public double getGrossPrice() {
+    protected double computeGrossPrice() {
         return Math.round(100 * periodCost * (totalPeriod / 30)) / 100.0;
     }
 
     @Override
-    public double getTotalTax() {
+    protected double computeTotalTax() {
         return Math.round(100 * getGrossPrice() * TAX_PERCENTAGE) / 100.0;
     }
 
@@ -80,9 +83,21 @@ public class VoicePlan extends Item {
         return Math.round(100 * periodCost) / 100.0;
     }
 
+    @Override
+    public ItemType getType() {
+        return ItemType.VOICE;
+    }
+
     @Override
     public String toString() {
-        return String.format("%s - %s \n %20.2f days @ $%.2f / %s \n %60s %9.2f $%9.2f", getName() + " (" + getUniqueCode() + ")", "Voice " + getPhoneNumber(), getTotalPeriod(), periodCost, "30 days", "$", getTotalTax(), getGrossPrice());
+        return ReportFormatter.render(this::appendTo);
+    }
+
+    @Override
+    void appendTo(ReportFormatter out) {
+        out.line(REPORT_LINE).text(getName()).text(getUniqueCode()).text(getPhoneNumber())
+                .decimal(getTotalPeriod()).decimal(periodCost)
+                .text("$").decimal(getTotalTax()).decimal(getGrossPrice());
     }
 
     @Override
@@ -0,0 +1,117 @@
+package unl.soc;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that sales and stores used as set elements and map keys are matched on their unique codes,
+ * so an instance reloaded from the database finds the entry of the instance it replaces.
+ * Runs without a test framework: each failed check throws an AssertionError.
+ */
+public class SaleStoreEqualityTest {
+
+    public static void main(String[] args) {
+        reloadedSaleIsFoundInSetsAndMaps();
+        saleWithAnotherCodeIsNotFound();
+        reloadedStoreIsFoundInSetsAndMaps();
+        storeWithAnotherCodeIsNotFound();
+        System.out.println("SaleStoreEqualityTest: all checks passed");
+    }
+
+    static void reloadedSaleIsFoundInSetsAndMaps() {
+        Store store = store(1, "st01");
+        Sale sale = sale(1, "s001", store, "2024-01-15");
+        sale.addItem(new ProductPurchase(1, new ProductPurchase(7, "p007", "Phone", 199.99)));
+
+        // Reloaded on another id, with its items not read yet
+        Sale reloaded = sale(42, "s001", store(2, "st01"), "2024-01-15");
+
+        check(sale.equals(reloaded) && reloaded.equals(sale), "a reloaded sale equals the original");
+        check(sale.hashCode() == reloaded.hashCode(), "a reloaded sale has the hash code of the original");
+
+        Set<Sale> sales = new HashSet<>();
+        sales.add(sale);
+        check(sales.contains(reloaded), "a set of sales contains the reloaded sale");
+        check(!sales.add(reloaded), "adding the reloaded sale to the set changes nothing");
+        check(sales.size() == 1, "the set of sales holds one sale");
+
+        Map<Sale, String> notes = new HashMap<>();
+        notes.put(sale, "first");
+        notes.put(reloaded, "second");
+        check(notes.size() == 1, "the map keyed by sale holds one entry");
+        check("second".equals(notes.get(sale)), "the reloaded sale replaces the value of the original");
+    }
+
+    static void saleWithAnotherCodeIsNotFound() {
+        Store store = store(1, "st01");
+        Sale sale = sale(1, "s001", store, "2024-01-15");
+        Sale other = sale(1, "s002", store, "2024-01-15");
+
+        check(!sale.equals(other) && !other.equals(sale), "sales with different codes are not equal");
+
+        Set<Sale> sales = new HashSet<>();
+        sales.add(sale);
+        check(!sales.contains(other), "a set of sales does not contain a sale with another code");
+
+        Map<Sale, String> notes = new HashMap<>();
+        notes.put(sale, "first");
+        check(notes.get(other) == null, "a map keyed by sale has no value for a sale with another code");
+    }
+
+    static void reloadedStoreIsFoundInSetsAndMaps() {
+        Store store = store(1, "st01");
+        store.addSale(sale(1, "s001", store, "2024-01-15"));
+
+        // Reloaded on another id, without its sales
+        Store reloaded = store(9, "st01");
+
+        check(store.equals(reloaded) && reloaded.equals(store), "a reloaded store equals the original");
+        check(store.hashCode() == reloaded.hashCode(), "a reloaded store has the hash code of the original");
+
+        Set<Store> stores = new HashSet<>();
+        stores.add(store);
+        check(stores.contains(reloaded), "a set of stores contains the reloaded store");
+        check(!stores.add(reloaded), "adding the reloaded store to the set changes nothing");
+
+        Map<Store, Integer> saleCounts = new HashMap<>();
+        saleCounts.put(store, 1);
+        saleCounts.merge(reloaded, 1, Integer::sum);
+        check(saleCounts.size() == 1, "the map keyed by store holds one entry");
+        check(saleCounts.get(store) == 2, "the reloaded store updates the value of the original");
+    }
+
+    static void storeWithAnotherCodeIsNotFound() {
+        Store store = store(1, "st01");
+        Store other = store(1, "st02");
+
+        check(!store.equals(other) && !other.equals(store), "stores with different codes are not equal");
+
+        Set<Store> stores = new HashSet<>();
+        stores.add(store);
+        check(!stores.contains(other), "a set of stores does not contain a store with another code");
+
+        Map<Store, Integer> saleCounts = new HashMap<>();
+        saleCounts.put(store, 1);
+        check(saleCounts.get(other) == null, "a map keyed by store has no value for a store with another code");
+    }
+
+    private static Store store(int id, String storeCode) {
+        return new Store(id, storeCode, new Address(id, "1 Main St", "Lincoln", "NE", 68508), person(id, "Manager"));
+    }
+
+    private static Sale sale(int id, String uniqueCode, Store store, String date) {
+        return new Sale(id, uniqueCode, store, person(100 + id, "Customer"), person(200 + id, "Salesman"), date);
+    }
+
+    private static Person person(int id, String lastName) {
+        return new Person(id, "uuid-" + id, "Pat", lastName, new Address(id, "2 Elm St", "Omaha", "NE", 68102));
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new AssertionError(description);
+        }
+    }
+}